@@ -0,0 +1,93 @@
+package com.light.renderscripttest;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Runs the batch pipeline over every image in <external files>/batch/in and writes to batch/out.
+// Extras: "op" (any PixelFilters.Op) or "ops" (several, chained in order), "radius", "sigma",
+// "bilateralSigma", "decodeThreads", "filterThreads", "encodeThreads", "queueCapacity".
+public class BatchActivity extends AppCompatActivity {
+    private static final String TAG = "BatchActivity";
+
+    private BatchPipeline pipeline;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_batch);
+        TextView output = findViewById(R.id.batchOutput);
+
+        Intent intent = getIntent();
+        String[] ops = intent.getStringArrayExtra("ops");
+        if (ops == null) {
+            ops = new String[]{intent.getStringExtra("op") != null ? intent.getStringExtra("op") : PixelFilters.Op.GRAYSCALE.name()};
+        }
+        String label = TextUtils.join(" > ", ops);
+        int radius = intent.getIntExtra("radius", 10);
+        float sigma = intent.getFloatExtra("sigma", radius / 3f);
+        float bilateralSigma = intent.getFloatExtra("bilateralSigma", BilateralGrid.DEFAULT_SIGMA_SPATIAL);
+        BatchPipeline.Config config = new BatchPipeline.Config();
+        config.decodeThreads = intent.getIntExtra("decodeThreads", config.decodeThreads);
+        config.filterThreads = intent.getIntExtra("filterThreads", config.filterThreads);
+        config.encodeThreads = intent.getIntExtra("encodeThreads", config.encodeThreads);
+        config.queueCapacity = intent.getIntExtra("queueCapacity", config.queueCapacity);
+
+        File inputDir = getExternalFilesDir("batch/in");
+        File outputDir = getExternalFilesDir("batch/out");
+        List<File> inputs = new ArrayList<>();
+        File[] files = inputDir != null ? inputDir.listFiles() : null;
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.isFile()) {
+                    inputs.add(file);
+                }
+            }
+        }
+        if (inputs.isEmpty() || outputDir == null) {
+            output.setText("No input images in " + inputDir);
+            return;
+        }
+
+        // One image per filter thread, so each image's filter runs single-threaded
+        try {
+            PixelFilter filter = null;
+            for (String op : ops) {
+                PixelFilter stage = PixelFilters.create(PixelFilters.Op.valueOf(op), radius, sigma, bilateralSigma, 1);
+                filter = filter == null ? stage : PixelFilters.chain(filter, stage);
+            }
+            pipeline = new BatchPipeline(filter, config);
+        } catch (IllegalArgumentException e) {
+            output.setText(e.getMessage());
+            return;
+        }
+        output.setText("Processing " + inputs.size() + " images with " + label + "...");
+        // The pipeline runs its stages on its own threads, so no scheduler worker is held for the whole batch
+        pipeline.start(inputs, outputDir, (report, stopped) -> {
+            if (stopped) {
+                Log.i(TAG, "Batch stopped\n" + report);
+                return;
+            }
+            Log.i(TAG, report.toString());
+            runOnUiThread(() -> output.setText(label + " on " + inputs.size() + " images\n" + report));
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.light.renderscripttest;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Three-stage decode -> filter -> encode pipeline over a list of image files.
+// Stages are connected by bounded queues, so a slow stage throttles the ones before it instead of
+// piling up decoded frames. Pixel buffers come from the shared pool and go back once the next stage
+// is done with them. Per-stage metrics show which stage is the bottleneck.
+// Stages run on the pipeline's own threads; start() returns at once and stop() interrupts them.
+public class BatchPipeline {
+    private static final String TAG = "BatchPipeline";
+
+    public interface Listener {
+        // Called once on the last encode thread, also after stop()
+        void finished(Report report, boolean stopped);
+    }
+
+    public static class Config {
+        public int decodeThreads = 2;
+        public int filterThreads = ParallelRows.CORES;
+        public int encodeThreads = 2;
+        // Frames each queue may hold between two stages
+        public int queueCapacity = 4;
+        public Bitmap.CompressFormat format = Bitmap.CompressFormat.PNG;
+        public int quality = 90;
+    }
+
+    public static class StageMetrics {
+        public final String name;
+        public final int threads;
+        final AtomicInteger items = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicLong busyNanos = new AtomicLong();
+        // Depth of this stage's output queue, sampled after every put
+        final AtomicLong depthSum = new AtomicLong();
+        final AtomicInteger depthSamples = new AtomicInteger();
+        final AtomicInteger maxDepth = new AtomicInteger();
+
+        StageMetrics(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        void sampleDepth(int depth) {
+            depthSum.addAndGet(depth);
+            depthSamples.incrementAndGet();
+            int max;
+            while (depth > (max = maxDepth.get()) && !maxDepth.compareAndSet(max, depth)) {
+                // Retry until the maximum sticks
+            }
+        }
+
+        // Fraction of the stage's thread time spent working rather than waiting on a queue
+        public double utilization(long wallNanos) {
+            return wallNanos == 0 ? 0 : (double) busyNanos.get() / ((double) wallNanos * threads);
+        }
+
+        public double itemsPerSecond(long wallNanos) {
+            return wallNanos == 0 ? 0 : items.get() * 1e9 / wallNanos;
+        }
+
+        public double meanDepth() {
+            int samples = depthSamples.get();
+            return samples == 0 ? 0 : (double) depthSum.get() / samples;
+        }
+    }
+
+    public static class Report {
+        public final List<StageMetrics> stages;
+        public final long wallNanos;
+
+        Report(List<StageMetrics> stages, long wallNanos) {
+            this.stages = stages;
+            this.wallNanos = wallNanos;
+        }
+
+        // The stage whose threads were busiest is the one to give more parallelism
+        public StageMetrics bottleneck() {
+            StageMetrics busiest = stages.get(0);
+            for (StageMetrics stage : stages) {
+                if (stage.utilization(wallNanos) > busiest.utilization(wallNanos)) {
+                    busiest = stage;
+                }
+            }
+            return busiest;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "Wall %d ms%n", wallNanos / 1000000));
+            for (StageMetrics stage : stages) {
+                sb.append(String.format(Locale.US, "%-7s x%d: %d items (%d failed), %.1f items/s, %.0f%% busy",
+                        stage.name, stage.threads, stage.items.get(), stage.failures.get(),
+                        stage.itemsPerSecond(wallNanos), 100 * stage.utilization(wallNanos)));
+                // The last stage writes files, not a queue
+                if (stage.depthSamples.get() > 0) {
+                    sb.append(String.format(Locale.US, ", out queue avg %.1f max %d",
+                            stage.meanDepth(), stage.maxDepth.get()));
+                }
+                sb.append('\n');
+            }
+            sb.append("Bottleneck: ").append(bottleneck().name).append('\n');
+            return sb.toString();
+        }
+    }
+
+    private static class Frame {
+        static final Frame END = new Frame(-1, null, null, 0, 0);
+
+        // Position in the input list, which picks the output name
+        final int index;
+        final File source;
+        final int width, height;
+        int[] pixels;
+
+        Frame(int index, File source, int[] pixels, int width, int height) {
+            this.index = index;
+            this.source = source;
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final PixelFilter filter;
+    private final Config config;
+    private final PixelBufferPool pool = PixelBufferPool.shared();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean stopped;
+
+    // Every stage needs a thread, or the end-of-stream markers never reach the next one and run() never returns
+    public BatchPipeline(PixelFilter filter, Config config) {
+        if (config.decodeThreads < 1 || config.filterThreads < 1 || config.encodeThreads < 1) {
+            throw new IllegalArgumentException("Each stage needs at least one thread: decode " + config.decodeThreads
+                    + ", filter " + config.filterThreads + ", encode " + config.encodeThreads);
+        }
+        if (config.queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1: " + config.queueCapacity);
+        }
+        if (config.format == null || config.quality < 0 || config.quality > 100) {
+            throw new IllegalArgumentException("Invalid output format " + config.format + " at quality " + config.quality);
+        }
+        this.filter = filter;
+        this.config = config;
+    }
+
+    // Processes every input into outputDir and reports to listener once all are written. Each output keeps its
+    // input's full name plus the format's extension (a.jpg -> a.jpg.png), so a.jpg and a.png do not collide.
+    public synchronized void start(List<File> inputs, File outputDir, Listener listener) {
+        if (!threads.isEmpty()) {
+            throw new IllegalStateException("Pipeline already started");
+        }
+        String[] outputNames = outputNames(inputs);
+        BlockingQueue<Frame> decoded = new ArrayBlockingQueue<>(config.queueCapacity);
+        BlockingQueue<Frame> filtered = new ArrayBlockingQueue<>(config.queueCapacity);
+        StageMetrics decode = new StageMetrics("decode", config.decodeThreads);
+        StageMetrics filterStage = new StageMetrics("filter", config.filterThreads);
+        StageMetrics encode = new StageMetrics("encode", config.encodeThreads);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger decodersLeft = new AtomicInteger(config.decodeThreads);
+        AtomicInteger filtersLeft = new AtomicInteger(config.filterThreads);
+        AtomicInteger encodersLeft = new AtomicInteger(config.encodeThreads);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < config.decodeThreads; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    decodeLoop(inputs, next, decoded, decode);
+                } finally {
+                    // The last decoder out tells every filter thread to stop
+                    if (decodersLeft.decrementAndGet() == 0) {
+                        sendEnd(decoded, config.filterThreads);
+                    }
+                }
+            }, "batch-decode-" + i));
+        }
+        for (int i = 0; i < config.filterThreads; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    filterLoop(decoded, filtered, filterStage);
+                } finally {
+                    if (filtersLeft.decrementAndGet() == 0) {
+                        sendEnd(filtered, config.encodeThreads);
+                    }
+                }
+            }, "batch-filter-" + i));
+        }
+        for (int i = 0; i < config.encodeThreads; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    encodeLoop(filtered, outputDir, outputNames, encode);
+                } finally {
+                    // Encoders only end after every filter has, so the last one out sees the whole batch
+                    if (encodersLeft.decrementAndGet() == 0) {
+                        List<StageMetrics> stages = new ArrayList<>();
+                        stages.add(decode);
+                        stages.add(filterStage);
+                        stages.add(encode);
+                        listener.finished(new Report(stages, System.nanoTime() - start), stopped);
+                    }
+                }
+            }, "batch-encode-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    // Interrupts every stage without waiting for them; the listener still gets the partial report
+    public synchronized void stop() {
+        stopped = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    private void decodeLoop(List<File> inputs, AtomicInteger next, BlockingQueue<Frame> out, StageMetrics metrics) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        int index;
+        while ((index = next.getAndIncrement()) < inputs.size() && !Thread.currentThread().isInterrupted()) {
+            File file = inputs.get(index);
+            long startTime = System.nanoTime();
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+            if (bitmap == null) {
+                metrics.failures.incrementAndGet();
+                Log.w(TAG, "Cannot decode " + file);
+                continue;
+            }
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = pool.acquire(width * height);
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            bitmap.recycle();
+            metrics.busyNanos.addAndGet(System.nanoTime() - startTime);
+            metrics.items.incrementAndGet();
+
+            if (!put(out, new Frame(index, file, pixels, width, height), metrics)) {
+                pool.release(pixels);
+                return;
+            }
+        }
+    }
+
+    private void filterLoop(BlockingQueue<Frame> in, BlockingQueue<Frame> out, StageMetrics metrics) {
+        Frame frame;
+        while ((frame = take(in)) != Frame.END) {
+            long startTime = System.nanoTime();
+            int[] result = pool.acquire(frame.width * frame.height);
+            try {
+                filter.apply(frame.pixels, result, frame.width, frame.height);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Filter failed on " + frame.source, e);
+                metrics.failures.incrementAndGet();
+                pool.release(result);
+                pool.release(frame.pixels);
+                continue;
+            }
+            pool.release(frame.pixels);
+            frame.pixels = result;
+            metrics.busyNanos.addAndGet(System.nanoTime() - startTime);
+            metrics.items.incrementAndGet();
+
+            if (!put(out, frame, metrics)) {
+                pool.release(result);
+                return;
+            }
+        }
+    }
+
+    private void encodeLoop(BlockingQueue<Frame> in, File outputDir, String[] outputNames, StageMetrics metrics) {
+        Bitmap bitmap = null;
+        Frame frame;
+        while ((frame = take(in)) != Frame.END) {
+            long startTime = System.nanoTime();
+            // Reuse this thread's bitmap while consecutive frames share a size
+            if (bitmap == null || bitmap.getWidth() != frame.width || bitmap.getHeight() != frame.height) {
+                if (bitmap != null) {
+                    bitmap.recycle();
+                }
+                bitmap = Bitmap.createBitmap(frame.width, frame.height, Bitmap.Config.ARGB_8888);
+            }
+            bitmap.setPixels(frame.pixels, 0, frame.width, 0, 0, frame.width, frame.height);
+            pool.release(frame.pixels);
+
+            File target = new File(outputDir, outputNames[frame.index]);
+            try (OutputStream stream = new FileOutputStream(target)) {
+                bitmap.compress(config.format, config.quality, stream);
+                metrics.items.incrementAndGet();
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot write " + target, e);
+                metrics.failures.incrementAndGet();
+            }
+            metrics.busyNanos.addAndGet(System.nanoTime() - startTime);
+        }
+        if (bitmap != null) {
+            bitmap.recycle();
+        }
+    }
+
+    // Inputs from different directories can still share a name; later ones get a numbered suffix
+    String[] outputNames(List<File> inputs) {
+        String extension = extension(config.format);
+        String[] names = new String[inputs.size()];
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < names.length; i++) {
+            String base = inputs.get(i).getName();
+            String name = base + extension;
+            for (int n = 2; !used.add(name.toLowerCase(Locale.US)); n++) {
+                name = base + "-" + n + extension;
+            }
+            names[i] = name;
+        }
+        return names;
+    }
+
+    private static String extension(Bitmap.CompressFormat format) {
+        switch (format) {
+            case JPEG:
+                return ".jpg";
+            case PNG:
+                return ".png";
+            default:
+                return ".webp";
+        }
+    }
+
+    private static boolean put(BlockingQueue<Frame> queue, Frame frame, StageMetrics metrics) {
+        try {
+            queue.put(frame);
+            metrics.sampleDepth(queue.size());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // An interrupted consumer behaves as if the stream ended
+    private static Frame take(BlockingQueue<Frame> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Frame.END;
+        }
+    }
+
+    private static void sendEnd(BlockingQueue<Frame> queue, int consumers) {
+        for (int i = 0; i < consumers; i++) {
+            try {
+                queue.put(Frame.END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
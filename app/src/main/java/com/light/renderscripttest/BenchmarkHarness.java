@@ -0,0 +1,58 @@
+package com.light.renderscripttest;
+
+import java.util.Arrays;
+
+// Runs a task a few times to warm up the JIT, then reports timings of the measured runs in μs
+public class BenchmarkHarness {
+
+    private final int warmupRuns;
+    private final int measuredRuns;
+
+    public BenchmarkHarness(int warmupRuns, int measuredRuns) {
+        if (measuredRuns < 1) {
+            throw new IllegalArgumentException("measuredRuns must be at least 1");
+        }
+        this.warmupRuns = Math.max(0, warmupRuns);
+        this.measuredRuns = measuredRuns;
+    }
+
+    public Result measure(Runnable task) {
+        for (int i = 0; i < warmupRuns; i++) {
+            task.run();
+        }
+
+        long[] times = new long[measuredRuns];
+        for (int i = 0; i < measuredRuns; i++) {
+            long startTime = System.nanoTime();
+            task.run();
+            long endTime = System.nanoTime();
+            times[i] = (endTime - startTime) / 1000;
+        }
+        return new Result(times);
+    }
+
+    public static class Result {
+        public final long minUs;
+        public final long medianUs;
+        public final long meanUs;
+        public final int runs;
+
+        Result(long[] times) {
+            long[] sorted = times.clone();
+            Arrays.sort(sorted);
+            long sum = 0;
+            for (long t : sorted) {
+                sum += t;
+            }
+            this.runs = sorted.length;
+            this.minUs = sorted[0];
+            this.medianUs = sorted[sorted.length / 2];
+            this.meanUs = sum / sorted.length;
+        }
+
+        @Override
+        public String toString() {
+            return "median " + medianUs + " μs, min " + minUs + " μs (" + runs + " runs)";
+        }
+    }
+}
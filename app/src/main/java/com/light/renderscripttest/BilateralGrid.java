@@ -0,0 +1,196 @@
+package com.light.renderscripttest;
+
+import java.util.Arrays;
+
+// Approximate bilateral filter on a bilateral grid (Chen, Paris & Durand, 2007).
+// Pixels are splatted into a coarse 3-D grid over (x / sigmaSpatial, y / sigmaSpatial, luma / sigmaRange)
+// that accumulates RGB and a count, the grid is blurred with GaussianBlur's kernel along each axis, and
+// every pixel reads its result back by trilinear interpolation. One grid cell spans one sigma on each
+// axis, so a larger spatial sigma means a smaller grid and the cost hardly depends on it. That also means the
+// grid only pays off at spatial sigmas of roughly 8 px and up; below that it is bigger than a direct filter
+// would need, so grids over MAX_GRID_FLOATS are coarsened by raising the spatial sigma until they fit.
+public final class BilateralGrid {
+
+    public static final float DEFAULT_SIGMA_SPATIAL = 16f;
+    public static final float DEFAULT_SIGMA_RANGE = 20f;
+    // 16 MB per grid; the blur needs a second one of the same size
+    static final int MAX_GRID_FLOATS = 4 * 1024 * 1024;
+
+    // The blur covers +-2 cells (two sigmas) on each axis
+    private static final int KERNEL_RADIUS = 2;
+    private static final float[] KERNEL = GaussianBlur.createGaussianKernel(KERNEL_RADIUS, 1f);
+    // Red, green, blue and the homogeneous weight per cell
+    private static final int CHANNELS = 4;
+
+    private BilateralGrid() {
+    }
+
+    // sigmaSpatial in pixels, sigmaRange in 8-bit luma levels
+    public static void apply(int[] pixels, int[] out, int width, int height, float sigmaSpatial, float sigmaRange,
+                             int threads) {
+        float range = Math.max(1f, sigmaRange);
+        int gridDepth = Math.round(255 / range) + 1;
+        float spatial = gridSpatial(width, height, gridDepth, sigmaSpatial);
+        int gridWidth = Math.round((width - 1) / spatial) + 1;
+        int gridHeight = Math.round((height - 1) / spatial) + 1;
+        int planeSize = gridWidth * gridHeight;
+        PixelBufferPool pool = PixelBufferPool.shared();
+        float[] grid = pool.acquireFloats(planeSize * gridDepth * CHANNELS);
+        float[] temp = pool.acquireFloats(grid.length);
+        try {
+            Arrays.fill(grid, 0f);
+            splat(pixels, grid, width, height, gridWidth, gridHeight, gridDepth, spatial, range, threads);
+            blur(grid, temp, gridWidth, gridHeight, gridDepth, threads);
+            slice(pixels, out, temp, width, height, gridWidth, gridHeight, gridDepth, spatial, range, threads);
+        } finally {
+            pool.release(temp);
+            pool.release(grid);
+        }
+    }
+
+    // The spatial sigma the grid is built at: sigmaSpatial, raised until the grid fits MAX_GRID_FLOATS
+    static float gridSpatial(int width, int height, int gridDepth, float sigmaSpatial) {
+        float spatial = Math.max(1f, sigmaSpatial);
+        while (gridFloats(width, height, gridDepth, spatial) > MAX_GRID_FLOATS) {
+            spatial *= 1.25f;
+        }
+        return spatial;
+    }
+
+    static long gridFloats(int width, int height, int gridDepth, float spatial) {
+        return (long) (Math.round((width - 1) / spatial) + 1) * (Math.round((height - 1) / spatial) + 1)
+                * gridDepth * CHANNELS;
+    }
+
+    // Bands own whole grid rows and visit only the image rows that round onto them, so no two threads
+    // write the same cell
+    private static void splat(int[] pixels, float[] grid, int width, int height, int gridWidth, int gridHeight,
+                              int gridDepth, float spatial, float range, int threads) {
+        int planeLength = gridWidth * gridHeight * CHANNELS;
+        ParallelRows.forEachBand(gridHeight, threads, (firstRow, endGridRow) -> {
+            int startRow = Math.max(0, (int) Math.floor((firstRow - 0.5f) * spatial));
+            int endRow = Math.min(height, (int) Math.ceil((endGridRow - 0.5f) * spatial) + 1);
+            for (int y = startRow; y < endRow; y++) {
+                int gy = Math.round(y / spatial);
+                if (gy < firstRow || gy >= endGridRow) {
+                    continue;
+                }
+                int row = y * width;
+                int gridRow = gy * gridWidth * CHANNELS;
+                for (int x = 0; x < width; x++) {
+                    int pixel = pixels[row + x];
+                    int gz = Math.round(luma(pixel) / range);
+                    int cell = gz * planeLength + gridRow + Math.round(x / spatial) * CHANNELS;
+                    grid[cell] += (pixel >> 16) & 0xFF;
+                    grid[cell + 1] += (pixel >> 8) & 0xFF;
+                    grid[cell + 2] += pixel & 0xFF;
+                    grid[cell + 3] += 1;
+                }
+            }
+        });
+    }
+
+    // Blur x and y within each luma slice, then z across slices; slices and rows are independent.
+    // The result ends up in temp
+    private static void blur(float[] grid, float[] temp, int gridWidth, int gridHeight, int gridDepth,
+                             int threads) {
+        int planeSize = gridWidth * gridHeight;
+        ParallelRows.forEachBand(gridDepth, threads, (startSlice, endSlice) -> {
+            for (int z = startSlice; z < endSlice; z++) {
+                int offset = z * planeSize * CHANNELS;
+                blurAxis(grid, temp, offset, gridWidth, gridHeight, CHANNELS, gridWidth * CHANNELS);
+                blurAxis(temp, grid, offset, gridHeight, gridWidth, gridWidth * CHANNELS, CHANNELS);
+            }
+        });
+        ParallelRows.forEachBand(gridHeight, threads, (startRow, endRow) -> {
+            for (int gy = startRow; gy < endRow; gy++) {
+                for (int gx = 0; gx < gridWidth; gx++) {
+                    int offset = (gy * gridWidth + gx) * CHANNELS;
+                    blurAxis(grid, temp, offset, gridDepth, 1, planeSize * CHANNELS, 0);
+                }
+            }
+        });
+    }
+
+    private static void slice(int[] pixels, int[] out, float[] grid, int width, int height, int gridWidth,
+                              int gridHeight, int gridDepth, float spatial, float range, int threads) {
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) -> {
+            float[] value = new float[CHANNELS];
+            for (int y = startRow; y < endRow; y++) {
+                float fy = Math.min(gridHeight - 1, y / spatial);
+                int y0 = Math.max(0, Math.min(gridHeight - 2, (int) fy));
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int pixel = pixels[row + x];
+                    float fx = Math.min(gridWidth - 1, x / spatial);
+                    float fz = Math.min(gridDepth - 1, luma(pixel) / range);
+                    int x0 = Math.max(0, Math.min(gridWidth - 2, (int) fx));
+                    int z0 = Math.max(0, Math.min(gridDepth - 2, (int) fz));
+                    trilinear(grid, gridWidth, gridHeight, gridDepth, fx, fy, fz, x0, y0, z0, value);
+                    float weight = value[3];
+                    if (weight <= 0f) {
+                        out[row + x] = pixel;
+                        continue;
+                    }
+                    out[row + x] = 0xFF000000 | (clampByte(value[0] / weight) << 16)
+                            | (clampByte(value[1] / weight) << 8) | clampByte(value[2] / weight);
+                }
+            }
+        });
+    }
+
+    // Blurs `lines` lines of `length` cells along one axis: cells are `step` floats apart within a line
+    // and lines start `lineStep` floats apart
+    private static void blurAxis(float[] in, float[] out, int offset, int length, int lines, int step, int lineStep) {
+        for (int line = 0; line < lines; line++) {
+            int base = offset + line * lineStep;
+            for (int i = 0; i < length; i++) {
+                for (int c = 0; c < CHANNELS; c++) {
+                    float sum = 0f;
+                    for (int k = -KERNEL_RADIUS; k <= KERNEL_RADIUS; k++) {
+                        int j = i + k;
+                        // Outside the grid is empty, which the weight channel accounts for
+                        if (j >= 0 && j < length) {
+                            sum += in[base + j * step + c] * KERNEL[k + KERNEL_RADIUS];
+                        }
+                    }
+                    out[base + i * step + c] = sum;
+                }
+            }
+        }
+    }
+
+    private static void trilinear(float[] grid, int gridWidth, int gridHeight, int gridDepth,
+                                  float fx, float fy, float fz, int x0, int y0, int z0, float[] value) {
+        // Single-cell axes have nothing to interpolate
+        int x1 = Math.min(gridWidth - 1, x0 + 1);
+        int y1 = Math.min(gridHeight - 1, y0 + 1);
+        int z1 = Math.min(gridDepth - 1, z0 + 1);
+        float ax = fx - x0, ay = fy - y0, az = fz - z0;
+        int plane = gridWidth * gridHeight;
+        for (int c = 0; c < CHANNELS; c++) {
+            float c00 = lerp(grid[((z0 * plane) + y0 * gridWidth + x0) * CHANNELS + c],
+                    grid[((z0 * plane) + y0 * gridWidth + x1) * CHANNELS + c], ax);
+            float c10 = lerp(grid[((z0 * plane) + y1 * gridWidth + x0) * CHANNELS + c],
+                    grid[((z0 * plane) + y1 * gridWidth + x1) * CHANNELS + c], ax);
+            float c01 = lerp(grid[((z1 * plane) + y0 * gridWidth + x0) * CHANNELS + c],
+                    grid[((z1 * plane) + y0 * gridWidth + x1) * CHANNELS + c], ax);
+            float c11 = lerp(grid[((z1 * plane) + y1 * gridWidth + x0) * CHANNELS + c],
+                    grid[((z1 * plane) + y1 * gridWidth + x1) * CHANNELS + c], ax);
+            value[c] = lerp(lerp(c00, c10, ay), lerp(c01, c11, ay), az);
+        }
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + (b - a) * t;
+    }
+
+    // BT.601 weights in 8-bit fixed point
+    private static int luma(int pixel) {
+        return (((pixel >> 16) & 0xFF) * 77 + ((pixel >> 8) & 0xFF) * 150 + (pixel & 0xFF) * 29) >> 8;
+    }
+
+    private static int clampByte(float v) {
+        return Math.max(0, Math.min(255, (int) (v + 0.5f)));
+    }
+}
@@ -7,7 +7,9 @@ import android.graphics.RenderEffect;
 import android.graphics.Shader;
 import android.os.Build;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Choreographer;
+import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
 
@@ -17,21 +19,29 @@ import androidx.renderscript.Element;
 import androidx.renderscript.RenderScript;
 import androidx.renderscript.ScriptIntrinsicBlur;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 public class BlurActivity extends AppCompatActivity {
+    private static final String TAG = "BlurActivity";
     private Bitmap mBitmapIn, mBitmapOutRS, mBitmapOutJava;
-    private ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final ProcessingScheduler scheduler = ProcessingScheduler.getInstance();
+    // Guards the allocations against release while an RS run is still using them
+    private final Object rsLock = new Object();
+    private boolean rsReleased;
     private MyGLSurfaceView glSurfaceView;
     public long timeJava, timeRS, timeGL;
+    // Result cache lookup (key hash plus read), kept apart from the Java blur time
+    public long timeCache;
     public int javaRadius, rsRadius;
     public float javaSigma;
-    public float buffer;
     private RenderScript mRS;
     private Allocation inAllocation, outAllocation;
     private ScriptIntrinsicBlur blurScript;
     private GaussianBlur gaussianBlur;
+    // Negative unless the intent asks for adaptive dispatch with a "maxError" extra (8-bit levels)
+    private float maxError;
+    private BlurSelector blurSelector;
+    private BlurSelector.Candidate javaChoice;
+    private ResultCache resultCache;
+    private boolean javaCached;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -39,79 +49,77 @@ public class BlurActivity extends AppCompatActivity {
         setContentView(R.layout.activity_blur);
         Intent intent = getIntent();
         int size = intent.getIntExtra("size", 256);
+        int resource = R.drawable.i256x256;
         switch (size) {
             case 256:
-                mBitmapIn = loadBitmap(R.drawable.i256x256);
                 javaSigma = 3.3f;
                 javaRadius = 10;
                 rsRadius = 10;
-                buffer = 1.5f;
                 break;
             case 640:
-                mBitmapIn = loadBitmap(R.drawable.i640x480);
+                resource = R.drawable.i640x480;
                 javaSigma = 5.3f;
                 javaRadius = 15;
                 rsRadius = 15;
-                buffer = 2.0f;
                 break;
             case 1024:
-                mBitmapIn = loadBitmap(R.drawable.i1024x1024);
+                resource = R.drawable.i1024x1024;
                 javaSigma = 9.3f;
                 javaRadius = 22;
                 rsRadius = 22;
-                buffer = 3.0f;
                 break;
             case 1920:
-                mBitmapIn = loadBitmap(R.drawable.i1920x1080);
+                resource = R.drawable.i1920x1080;
                 javaSigma = 16.3f;
                 javaRadius = 25;
                 rsRadius = 25;
-                buffer = 4.0f;
                 break;
         }
-        int w = mBitmapIn.getWidth();
-        int h = mBitmapIn.getHeight();
         gaussianBlur = new GaussianBlur(javaRadius, javaSigma);
-        ImageView in = findViewById(R.id.inputImage);
-        in.setImageBitmap(mBitmapIn);
-        mBitmapOutRS = Bitmap.createBitmap(w, h, mBitmapIn.getConfig());
-        mBitmapOutJava = Bitmap.createBitmap(w, h, mBitmapIn.getConfig());
+        resultCache = ResultCache.getInstance(this);
+        maxError = intent.getFloatExtra("maxError", -1f);
+        if (maxError >= 0) {
+            RenderScriptBlur rsBlur = scheduler.backend(this, RenderScriptBlur.class, RenderScriptBlur::new);
+            blurSelector = new BlurSelector(this, rsBlur);
+        }
 
         TextView timeViewJava = findViewById(R.id.timeJava);
         TextView timeViewRS = findViewById(R.id.timeRS);
         glSurfaceView = findViewById(R.id.outputGL);
+        // Its surface must not be created before the renderer is set, and that waits for the input
+        glSurfaceView.setVisibility(View.GONE);
 
-        // Initialize RenderScript
-        mRS = RenderScript.create(this);
-
-        // Create input and output allocations
-        inAllocation = Allocation.createFromBitmap(mRS, mBitmapIn, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
-        outAllocation = Allocation.createTyped(mRS, inAllocation.getType());
-
+        // Reuse the app-wide RenderScript context
+        mRS = scheduler.getRenderScript(this);
         // Create an intrinsic blur script
-        blurScript = ScriptIntrinsicBlur.create(mRS, Element.U8_4(mRS));
-        blurScript.setRadius(rsRadius); // Set desired blur radius
+        blurScript = scheduler.backend(this, ScriptIntrinsicBlur.class, rs -> ScriptIntrinsicBlur.create(rs, Element.U8_4(rs)));
 
-        // Benchmark GLSurfaceView rendering
-        benchmarkGLRendering();
-
-        // Apply RenderEffect
-        ImageView render = findViewById(R.id.outputRender);
-        render.setImageBitmap(mBitmapIn);
-        applyGaussianBlurEffect(render, 5, 5);
+        // Load the input, then benchmark Java blur, then RenderScript blur; one request so the two timings
+        // never overlap. Generating or resizing large inputs takes seconds, so none of it runs on this thread
+        final int inputResource = resource;
+        scheduler.submit(TAG, ProcessingScheduler.Lane.INTERACTIVE, () -> {
+            if (!loadInput(inputResource)) {
+                return;
+            }
+            runOnUiThread(this::bindInput);
 
-        // Benchmark Java blur
-        executorService.execute(() -> {
             applyGaussianBlurJava();
             runOnUiThread(() -> {
                 ImageView outputJava = findViewById(R.id.outputJava);
                 outputJava.setImageBitmap(mBitmapOutJava);
-                timeViewJava.setText("Time Java: " + timeJava + " μs");
+                if (javaChoice != null) {
+                    timeViewJava.setText("Time Java: " + timeJava + " μs, " + javaChoice.algorithm.label + " x" + javaChoice.threads);
+                } else {
+                    timeViewJava.setText(javaCached
+                            ? "Time Java: cached, lookup " + timeCache + " μs"
+                            : "Time Java: " + timeJava + " μs");
+                }
+                Log.i(TAG, "Result cache: " + resultCache.stats());
             });
-        });
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
 
-        // Benchmark RenderScript blur
-        executorService.execute(() -> {
             applyGaussianBlurRS();
             runOnUiThread(() -> {
                 ImageView outputRS = findViewById(R.id.outputRS);
@@ -120,20 +128,133 @@ public class BlurActivity extends AppCompatActivity {
             });
         });
     }
+
+    // Worker thread: input bitmap, outputs and allocations. False once the screen has gone
+    private boolean loadInput(int resource) {
+        Bitmap bitmap = loadBitmap(resource);
+        synchronized (rsLock) {
+            if (rsReleased || Thread.currentThread().isInterrupted()) {
+                bitmap.recycle();
+                return false;
+            }
+            int w = bitmap.getWidth();
+            int h = bitmap.getHeight();
+            mBitmapIn = bitmap;
+            mBitmapOutRS = Bitmap.createBitmap(w, h, bitmap.getConfig());
+            mBitmapOutJava = Bitmap.createBitmap(w, h, bitmap.getConfig());
+            inAllocation = Allocation.createFromBitmap(mRS, mBitmapIn, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
+            outAllocation = Allocation.createTyped(mRS, inAllocation.getType());
+            return true;
+        }
+    }
+
+    // UI thread, once the input is loaded
+    private void bindInput() {
+        if (isDestroyed()) {
+            return;
+        }
+        ImageView in = findViewById(R.id.inputImage);
+        in.setImageBitmap(mBitmapIn);
+
+        // Benchmark GLSurfaceView rendering
+        benchmarkGLRendering();
+        glSurfaceView.setVisibility(View.VISIBLE);
+
+        // Apply RenderEffect
+        ImageView render = findViewById(R.id.outputRender);
+        render.setImageBitmap(mBitmapIn);
+        applyGaussianBlurEffect(render, 5, 5);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        scheduler.cancel(TAG);
+        // The allocations belong to this screen; the context and script stay alive for the next one.
+        // Released here rather than queued, as a full queue could reject the cleanup; an RS run still in
+        // flight holds rsLock until its kernel returns
+        synchronized (rsLock) {
+            rsReleased = true;
+            // Null while the input is still loading
+            if (inAllocation != null) {
+                inAllocation.destroy();
+                outAllocation.destroy();
+            }
+        }
+    }
+
     private void warmUp() {
         applyGaussianBlurJava();
         applyGaussianBlurRS();
     }
     private Bitmap loadBitmap(int resource) {
+        // A generated image requested through the intent replaces the bundled drawable
+        Bitmap synthetic = SyntheticImage.fromIntent(getIntent());
+        if (synthetic != null) {
+            return synthetic;
+        }
         final BitmapFactory.Options options = new BitmapFactory.Options();
         options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-        return BitmapFactory.decodeResource(getResources(), resource, options);
+        Bitmap bitmap = BitmapFactory.decodeResource(getResources(), resource, options);
+        // Sizes without a drawable of their own are scaled from it
+        int width = getIntent().getIntExtra("width", bitmap.getWidth());
+        int height = getIntent().getIntExtra("height", bitmap.getHeight());
+        if (width != bitmap.getWidth() || height != bitmap.getHeight()) {
+            Bitmap scaled = ResizeEngine.resize(bitmap, width, height, ResizeEngine.Kernel.LANCZOS3, ParallelRows.CORES);
+            bitmap.recycle();
+            return scaled;
+        }
+        return bitmap;
     }
     private void applyGaussianBlurJava() {
+        if (blurSelector != null) {
+            applyAdaptiveBlurJava();
+            return;
+        }
+        int w = mBitmapIn.getWidth();
+        int h = mBitmapIn.getHeight();
+        int[] pixels = new int[w * h];
+        mBitmapIn.getPixels(pixels, 0, w, 0, 0, w, h);
+
+        // Cache work stays outside the timed window so "Time Java" is always the blur itself
+        long lookupStart = System.nanoTime();
+        ResultCache.Key key = ResultCache.key("gaussian_blur", GaussianBlur.VERSION, pixels, w, h,
+                "r=" + javaRadius + ",s=" + javaSigma);
+        int[] out = resultCache.get(key);
+        timeCache = (System.nanoTime() - lookupStart) / 1000;
+        javaCached = out != null;
+        if (javaCached) {
+            mBitmapOutJava = Bitmap.createBitmap(w, h, mBitmapIn.getConfig());
+            mBitmapOutJava.setPixels(out, 0, w, 0, 0, w, h);
+            return;
+        }
+
         long startTime = System.nanoTime();
-        mBitmapOutJava = gaussianBlur.applyGaussianBlur(mBitmapIn);
+        out = new int[w * h];
+        gaussianBlur.blur(pixels, out, w, h, 1);
+        mBitmapOutJava = Bitmap.createBitmap(w, h, mBitmapIn.getConfig());
+        mBitmapOutJava.setPixels(out, 0, w, 0, 0, w, h);
         long endTime = System.nanoTime();
         timeJava = (endTime - startTime)/1000;
+        resultCache.put(key, out);
+    }
+
+    private void applyAdaptiveBlurJava() {
+        int w = mBitmapIn.getWidth();
+        int h = mBitmapIn.getHeight();
+        int[] pixels = new int[w * h];
+        int[] out = new int[w * h];
+        mBitmapIn.getPixels(pixels, 0, w, 0, 0, w, h);
+        // Profile this size/radius bucket up front so a first run does not time the micro-benchmarks
+        blurSelector.profileFor(w, h, javaRadius, javaSigma);
+
+        long startTime = System.nanoTime();
+        javaChoice = blurSelector.blur(pixels, out, w, h, javaRadius, javaSigma, maxError);
+        long endTime = System.nanoTime();
+        timeJava = (endTime - startTime) / 1000;
+
+        mBitmapOutJava = Bitmap.createBitmap(w, h, mBitmapIn.getConfig());
+        mBitmapOutJava.setPixels(out, 0, w, 0, 0, w, h);
     }
 
     private void applyGaussianBlurEffect(ImageView imageView, float blurRadiusX, float blurRadiusY) {
@@ -158,18 +279,21 @@ public class BlurActivity extends AppCompatActivity {
     }
 
     private void applyGaussianBlurRS() {
-        blurScript.setInput(inAllocation);
-        long startTime = System.nanoTime();
-        blurScript.forEach(outAllocation);
-
-        // Copy the result to the output Bitmap
-        outAllocation.copyTo(mBitmapOutRS);
+        synchronized (rsLock) {
+            if (rsReleased) {
+                return;
+            }
+            blurScript.setRadius(rsRadius); // Set desired blur radius
+            blurScript.setInput(inAllocation);
+            long startTime = System.nanoTime();
+            blurScript.forEach(outAllocation);
 
-        long endTime = System.nanoTime();
-        timeRS = (endTime - startTime) / 1000;
+            // Copy the result to the output Bitmap
+            outAllocation.copyTo(mBitmapOutRS);
 
-        // Destroy the RenderScript context to release resources
-        mRS.destroy();
+            long endTime = System.nanoTime();
+            timeRS = (endTime - startTime) / 1000;
+        }
     }
     private void benchmarkGLRendering() {
         // Get the aspect ratio of the bitmap
@@ -191,8 +315,8 @@ public class BlurActivity extends AppCompatActivity {
             }
         });
 
-        // Set the renderer and trigger the render request
-        glSurfaceView.setRenderer(new MyGLRenderer(this, mBitmapIn, 1, buffer, aspectRatio));
+        // Set the renderer and trigger the render request; the generated shaders use the Java path's kernel
+        glSurfaceView.setRenderer(new MyGLRenderer(this, mBitmapIn, 1, javaRadius, javaSigma, aspectRatio));
         glSurfaceView.requestRender();
     }
 }
\ No newline at end of file
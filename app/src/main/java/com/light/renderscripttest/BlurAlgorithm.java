@@ -0,0 +1,60 @@
+package com.light.renderscripttest;
+
+// Blur implementations the benchmark tooling knows how to run
+public enum BlurAlgorithm {
+    GAUSSIAN_EXACT("Java exact", true),
+    BOX("Box x3", true),
+    IIR("Recursive IIR", true),
+    PYRAMID("Pyramid", true),
+    RENDERSCRIPT("RS intrinsic", false);
+
+    public final String label;
+    // False when the implementation schedules its own threads and ignores the requested count
+    public final boolean threaded;
+
+    BlurAlgorithm(String label, boolean threaded) {
+        this.label = label;
+        this.threaded = threaded;
+    }
+
+    public boolean supports(int radius, RenderScriptBlur rsBlur) {
+        if (this == RENDERSCRIPT) {
+            return rsBlur != null && RenderScriptBlur.supportsRadius(radius);
+        }
+        return true;
+    }
+
+    // rsBlur is only needed for RENDERSCRIPT and may be null otherwise
+    public BlurEngine createEngine(RenderScriptBlur rsBlur) {
+        switch (this) {
+            case BOX:
+                return new BoxBlur();
+            case IIR:
+                return new RecursiveGaussianBlur();
+            case PYRAMID:
+                return new PyramidBlur();
+            case RENDERSCRIPT:
+                if (rsBlur == null) {
+                    throw new IllegalStateException("RenderScript blur needs a RenderScriptBlur instance");
+                }
+                return (pixels, out, width, height, radius, sigma, threads) ->
+                        rsBlur.blur(pixels, out, width, height, radius);
+            case GAUSSIAN_EXACT:
+            default:
+                return new BlurEngine() {
+                    private GaussianBlur gaussianBlur;
+
+                    @Override
+                    public void blur(int[] pixels, int[] out, int width, int height, int radius, float sigma, int threads) {
+                        // Keep the kernel while the parameters stay the same
+                        GaussianBlur current = gaussianBlur;
+                        if (current == null || current.getRadius() != radius || current.getSigma() != sigma) {
+                            current = new GaussianBlur(radius, sigma);
+                            gaussianBlur = current;
+                        }
+                        current.blur(pixels, out, width, height, threads);
+                    }
+                };
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.light.renderscripttest;
+
+// A blur implementation over ARGB_8888 pixel arrays. out must not alias pixels.
+// Implementations that do not use a finite kernel may ignore radius.
+public interface BlurEngine {
+    void blur(int[] pixels, int[] out, int width, int height, int radius, float sigma, int threads);
+}
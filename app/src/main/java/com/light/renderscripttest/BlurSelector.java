@@ -0,0 +1,266 @@
+package com.light.renderscripttest;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Picks the fastest blur implementation for a request from a per-device profile.
+// The profile is keyed by (operation, size bucket, radius bucket, sigma). The first request that lands in an
+// unprofiled bucket benchmarks every candidate on a synthetic image of its size and stores the timings
+// and the error of each candidate against the exact Gaussian in SharedPreferences. Profiling runs outside
+// the lock, so requests for other buckets keep going; requests for the same bucket wait for its result.
+public class BlurSelector {
+    private static final String TAG = "BlurSelector";
+    public static final String OPERATION = "gaussian_blur";
+    private static final String PREFS_NAME = "blur_selector_profile";
+    private static final String KEY_VERSION = "profile_version";
+    // Bump when an implementation changes enough to invalidate stored timings or errors
+    private static final int PROFILE_VERSION = 2;
+
+    public static class Candidate {
+        public final BlurAlgorithm algorithm;
+        public final int threads;
+        public final long timeUs;
+        // Mean absolute difference to the exact Gaussian in 8-bit levels, border excluded
+        public final float meanError;
+
+        Candidate(BlurAlgorithm algorithm, int threads, long timeUs, float meanError) {
+            this.algorithm = algorithm;
+            this.threads = threads;
+            this.timeUs = timeUs;
+            this.meanError = meanError;
+        }
+
+        @Override
+        public String toString() {
+            String name = algorithm.threaded ? algorithm.label + " x" + threads : algorithm.label;
+            return String.format(Locale.US, "%s (%d μs, err %.2f)", name, timeUs, meanError);
+        }
+
+        String encode() {
+            return String.format(Locale.US, "%s:%d:%d:%.4f", algorithm.name(), threads, timeUs, meanError);
+        }
+
+        static Candidate decode(String s) {
+            String[] parts = s.split(":");
+            return new Candidate(BlurAlgorithm.valueOf(parts[0]), Integer.parseInt(parts[1]),
+                    Long.parseLong(parts[2]), Float.parseFloat(parts[3]));
+        }
+    }
+
+    private final SharedPreferences prefs;
+    private final RenderScriptBlur rsBlur;
+    private final Map<String, List<Candidate>> profiles = new HashMap<>();
+    private final Map<BlurAlgorithm, BlurEngine> engines = new HashMap<>();
+    // Keys whose benchmark is running on some thread
+    private final Set<String> profiling = new HashSet<>();
+
+    // rsBlur may be null, in which case the RenderScript intrinsic is never considered
+    public BlurSelector(Context context, RenderScriptBlur rsBlur) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.rsBlur = rsBlur;
+        if (prefs.getInt(KEY_VERSION, 0) != PROFILE_VERSION) {
+            prefs.edit().clear().putInt(KEY_VERSION, PROFILE_VERSION).apply();
+        }
+    }
+
+    // Blurs with the fastest profiled implementation whose error is at most maxMeanError and returns it
+    public Candidate blur(int[] pixels, int[] out, int width, int height, int radius, float sigma, float maxMeanError) {
+        Candidate choice = select(width, height, radius, sigma, maxMeanError);
+        BlurEngine engine;
+        synchronized (this) {
+            engine = engine(choice.algorithm);
+        }
+        engine.blur(pixels, out, width, height, radius, sigma, choice.threads);
+        return choice;
+    }
+
+    public Candidate select(int width, int height, int radius, float sigma, float maxMeanError) {
+        List<Candidate> candidates = profileFor(width, height, radius, sigma);
+        Candidate best = null;
+        for (Candidate candidate : candidates) {
+            if (candidate.meanError <= maxMeanError && candidate.algorithm.supports(radius, rsBlur)
+                    && (best == null || candidate.timeUs < best.timeUs)) {
+                best = candidate;
+            }
+        }
+        // The exact Gaussian always satisfies the bound, so this only triggers if it was never profiled
+        return best != null ? best : new Candidate(BlurAlgorithm.GAUSSIAN_EXACT, ParallelRows.CORES, 0, 0f);
+    }
+
+    public List<Candidate> profileFor(int width, int height, int radius, float sigma) {
+        String key = key(width, height, radius, sigma);
+        synchronized (this) {
+            while (true) {
+                List<Candidate> candidates = profiles.get(key);
+                if (candidates == null) {
+                    candidates = load(key);
+                    if (candidates != null) {
+                        profiles.put(key, candidates);
+                    }
+                }
+                if (candidates != null) {
+                    return candidates;
+                }
+                if (profiling.add(key)) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // select() falls back to the exact Gaussian
+                    Thread.currentThread().interrupt();
+                    return Collections.emptyList();
+                }
+            }
+        }
+
+        List<Candidate> candidates = null;
+        try {
+            candidates = benchmark(width, height, radius, sigma);
+        } finally {
+            synchronized (this) {
+                profiling.remove(key);
+                if (candidates != null) {
+                    store(key, candidates);
+                    profiles.put(key, candidates);
+                }
+                notifyAll();
+            }
+        }
+        return candidates;
+    }
+
+    public synchronized void clearProfile() {
+        profiles.clear();
+        prefs.edit().clear().putInt(KEY_VERSION, PROFILE_VERSION).apply();
+    }
+
+    // The approximations' error depends on sigma relative to the radius, so the exact sigma is part of the key
+    static String key(int width, int height, int radius, float sigma) {
+        return OPERATION + "|" + sizeBucket(width, height) + "|" + radiusBucket(radius) + "|" + sigma;
+    }
+
+    // Powers of two of the pixel count, starting at 64K: 0 covers up to 256x256, 5 covers 1920x1080
+    static int sizeBucket(int width, int height) {
+        long pixels = (long) width * height;
+        int bucket = 0;
+        while (pixels > (65536L << bucket) && bucket < 12) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    // <=3, <=7, <=15, <=31, larger
+    static int radiusBucket(int radius) {
+        int bucket = 0;
+        while (radius > (4 << bucket) - 1 && bucket < 4) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private List<Candidate> benchmark(int width, int height, int radius, float sigma) {
+        Log.i(TAG, "Profiling " + key(width, height, radius, sigma) + " at " + width + "x" + height + " r=" + radius);
+        PixelBufferPool pool = PixelBufferPool.shared();
+        int length = width * height;
+        int[] pixels = SyntheticImage.generate(SyntheticImage.Pattern.NATURAL, width, height, SyntheticImage.DEFAULT_SEED, pool);
+        int[] reference = pool.acquire(length);
+        int[] out = pool.acquire(length);
+        BenchmarkHarness harness = new BenchmarkHarness(1, 3);
+        List<Candidate> candidates = new ArrayList<>();
+        try {
+            new GaussianBlur(radius, sigma).blur(pixels, reference, width, height, ParallelRows.CORES);
+
+            int[] threadCounts = ParallelRows.CORES > 1 ? new int[]{1, ParallelRows.CORES} : new int[]{1};
+            for (BlurAlgorithm algorithm : BlurAlgorithm.values()) {
+                if (!algorithm.supports(radius, rsBlur)) {
+                    continue;
+                }
+                // Own instances, since blur() may be using the shared ones meanwhile
+                BlurEngine engine = algorithm.createEngine(rsBlur);
+                for (int threads : algorithm.threaded ? threadCounts : new int[]{1}) {
+                    BenchmarkHarness.Result result = harness.measure(() ->
+                            engine.blur(pixels, out, width, height, radius, sigma, threads));
+                    float error = algorithm == BlurAlgorithm.GAUSSIAN_EXACT
+                            ? 0f : meanError(reference, out, width, height, radius);
+                    Candidate candidate = new Candidate(algorithm, threads, result.medianUs, error);
+                    Log.i(TAG, "  " + candidate);
+                    candidates.add(candidate);
+                }
+            }
+        } finally {
+            pool.release(pixels);
+            pool.release(reference);
+            pool.release(out);
+        }
+        return candidates;
+    }
+
+    // Edge handling differs between implementations, so only the interior is compared
+    static float meanError(int[] expected, int[] actual, int width, int height, int border) {
+        if (width <= 2 * border || height <= 2 * border) {
+            border = 0;
+        }
+        long sum = 0;
+        long count = 0;
+        for (int y = border; y < height - border; y++) {
+            int row = y * width;
+            for (int x = border; x < width - border; x++) {
+                int a = expected[row + x];
+                int b = actual[row + x];
+                sum += Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF))
+                        + Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF))
+                        + Math.abs((a & 0xFF) - (b & 0xFF));
+                count += 3;
+            }
+        }
+        return count == 0 ? 0f : (float) sum / count;
+    }
+
+    private BlurEngine engine(BlurAlgorithm algorithm) {
+        BlurEngine engine = engines.get(algorithm);
+        if (engine == null) {
+            engine = algorithm.createEngine(rsBlur);
+            engines.put(algorithm, engine);
+        }
+        return engine;
+    }
+
+    private List<Candidate> load(String key) {
+        String stored = prefs.getString(key, null);
+        if (stored == null) {
+            return null;
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        try {
+            for (String entry : stored.split(";")) {
+                candidates.add(Candidate.decode(entry));
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            Log.w(TAG, "Discarding unreadable profile for " + key, e);
+            return null;
+        }
+        return candidates;
+    }
+
+    private void store(String key, List<Candidate> candidates) {
+        StringBuilder sb = new StringBuilder();
+        for (Candidate candidate : candidates) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(candidate.encode());
+        }
+        prefs.edit().putString(key, sb.toString()).apply();
+    }
+}
@@ -0,0 +1,85 @@
+package com.light.renderscripttest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Builds the horizontal and vertical fragment shaders of a separable Gaussian blur for MyGLRenderer, from
+// the same kernel GaussianBlur uses. Weights are baked in as constants. Each pair of neighbouring taps is
+// merged into one bilinear fetch placed between the two texels in proportion to their weights, so a
+// radius r pass takes r + 1 fetches (rounded up to odd) instead of 2r + 1. Sources are cached per parameter
+// set. GL clamps to the edge where GaussianBlur drops outside samples, so only the interior matches.
+public final class BlurShaderGenerator {
+
+    // The centre tap sits at offset 0; every other tap is fetched at +offset and -offset texels
+    public static final class Taps {
+        public final float[] offsets;
+        public final float[] weights;
+
+        Taps(float[] offsets, float[] weights) {
+            this.offsets = offsets;
+            this.weights = weights;
+        }
+    }
+
+    private static final Map<String, String> SOURCES = new HashMap<>();
+
+    private BlurShaderGenerator() {
+    }
+
+    static Taps linearTaps(int radius, float sigma) {
+        float[] kernel = GaussianBlur.createGaussianKernel(radius, sigma);
+        int count = 1 + (radius + 1) / 2;
+        float[] offsets = new float[count];
+        float[] weights = new float[count];
+        weights[0] = kernel[radius];
+        for (int t = 1, i = 1; i <= radius; t++, i += 2) {
+            float near = kernel[radius + i];
+            // An odd radius leaves the outermost texel without a partner
+            float far = i + 1 <= radius ? kernel[radius + i + 1] : 0f;
+            weights[t] = near + far;
+            offsets[t] = weights[t] == 0f ? i : (i * near + (i + 1) * far) / weights[t];
+        }
+        return new Taps(offsets, weights);
+    }
+
+    public static synchronized String fragmentShader(int radius, float sigma, boolean horizontal) {
+        String key = radius + ":" + sigma + ":" + (horizontal ? "h" : "v");
+        String source = SOURCES.get(key);
+        if (source == null) {
+            source = generate(linearTaps(radius, sigma), horizontal);
+            SOURCES.put(key, source);
+        }
+        return source;
+    }
+
+    private static String generate(Taps taps, boolean horizontal) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("#version 320 es\n");
+        // Offsets are fractions of a texel, which mediump cannot resolve on large textures
+        sb.append("precision highp float;\n\n");
+        sb.append("in vec2 v_TexCoord;\n");
+        sb.append("out vec4 FragColor;\n\n");
+        sb.append("uniform sampler2D uTexture;\n\n");
+        sb.append("void main() {\n");
+        sb.append(horizontal
+                ? "    vec2 texel = vec2(1.0 / float(textureSize(uTexture, 0).x), 0.0);\n"
+                : "    vec2 texel = vec2(0.0, 1.0 / float(textureSize(uTexture, 0).y));\n");
+        sb.append("    vec4 color = texture(uTexture, v_TexCoord) * ").append(literal(taps.weights[0])).append(";\n");
+        for (int t = 1; t < taps.offsets.length; t++) {
+            String offset = literal(taps.offsets[t]);
+            String weight = literal(taps.weights[t]);
+            sb.append("    color += texture(uTexture, v_TexCoord + texel * ").append(offset).append(") * ")
+                    .append(weight).append(";\n");
+            sb.append("    color += texture(uTexture, v_TexCoord - texel * ").append(offset).append(") * ")
+                    .append(weight).append(";\n");
+        }
+        sb.append("    FragColor = color;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // Float.toString always has a '.' or an exponent, both valid GLSL float literals
+    private static String literal(float value) {
+        return Float.toString(value);
+    }
+}
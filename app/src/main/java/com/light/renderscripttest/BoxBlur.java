@@ -0,0 +1,108 @@
+package com.light.renderscripttest;
+
+// Gaussian approximation from three successive box blurs (central limit theorem).
+// Each box pass uses a running sum, so the cost per pixel does not depend on the radius.
+// Edges are clamped rather than dropped, which differs from GaussianBlur near the border.
+public class BoxBlur implements BlurEngine {
+
+    private static final int PASSES = 3;
+
+    @Override
+    public void blur(int[] pixels, int[] out, int width, int height, int radius, float sigma, int threads) {
+        int[] boxRadii = boxRadiiForSigma(sigma, PASSES);
+        int[] temp = PixelBufferPool.shared().acquire(width * height);
+        try {
+            int[] src = pixels;
+            for (int boxRadius : boxRadii) {
+                final int[] in = src;
+                ParallelRows.forEachBand(height, threads, (startRow, endRow) ->
+                        horizontalPass(in, temp, width, boxRadius, startRow, endRow));
+                ParallelRows.forEachBand(height, threads, (startRow, endRow) ->
+                        verticalPass(temp, out, width, height, boxRadius, startRow, endRow));
+                src = out;
+            }
+        } finally {
+            PixelBufferPool.shared().release(temp);
+        }
+    }
+
+    // Box radii whose combined variance best matches sigma (Kovesi, "Fast almost-Gaussian filtering")
+    static int[] boxRadiiForSigma(float sigma, int n) {
+        double wIdeal = Math.sqrt(12.0 * sigma * sigma / n + 1);
+        int wl = (int) Math.floor(wIdeal);
+        if (wl % 2 == 0) {
+            wl--;
+        }
+        int wu = wl + 2;
+        double mIdeal = (12.0 * sigma * sigma - n * wl * wl - 4.0 * n * wl - 3.0 * n) / (-4.0 * wl - 4);
+        int m = (int) Math.round(mIdeal);
+
+        int[] radii = new int[n];
+        for (int i = 0; i < n; i++) {
+            radii[i] = ((i < m ? wl : wu) - 1) / 2;
+        }
+        return radii;
+    }
+
+    private static void horizontalPass(int[] in, int[] out, int width, int r, int startRow, int endRow) {
+        int size = 2 * r + 1;
+        // Round to nearest; truncating in each of the six passes darkens the result by a few levels
+        int half = size / 2;
+        int last = width - 1;
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            int red = 0, green = 0, blue = 0;
+            for (int i = -r; i <= r; i++) {
+                int pixel = in[row + Math.max(0, Math.min(last, i))];
+                red += (pixel >> 16) & 0xFF;
+                green += (pixel >> 8) & 0xFF;
+                blue += pixel & 0xFF;
+            }
+            for (int x = 0; x < width; x++) {
+                out[row + x] = 0xFF000000 | ((red + half) / size << 16) | ((green + half) / size << 8) | (blue + half) / size;
+
+                int add = in[row + Math.min(last, x + r + 1)];
+                int remove = in[row + Math.max(0, x - r)];
+                red += ((add >> 16) & 0xFF) - ((remove >> 16) & 0xFF);
+                green += ((add >> 8) & 0xFF) - ((remove >> 8) & 0xFF);
+                blue += (add & 0xFF) - (remove & 0xFF);
+            }
+        }
+    }
+
+    // Each band keeps one running sum per column and slides it down its rows
+    private static void verticalPass(int[] in, int[] out, int width, int height, int r, int startRow, int endRow) {
+        int size = 2 * r + 1;
+        int half = size / 2;
+        int last = height - 1;
+        int[] red = new int[width];
+        int[] green = new int[width];
+        int[] blue = new int[width];
+
+        for (int j = startRow - r; j <= startRow + r; j++) {
+            int row = Math.max(0, Math.min(last, j)) * width;
+            for (int x = 0; x < width; x++) {
+                int pixel = in[row + x];
+                red[x] += (pixel >> 16) & 0xFF;
+                green[x] += (pixel >> 8) & 0xFF;
+                blue[x] += pixel & 0xFF;
+            }
+        }
+
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            int addRow = Math.min(last, y + r + 1) * width;
+            int removeRow = Math.max(0, y - r) * width;
+            for (int x = 0; x < width; x++) {
+                out[row + x] = 0xFF000000 | ((red[x] + half) / size << 16) | ((green[x] + half) / size << 8)
+                        | (blue[x] + half) / size;
+
+                int add = in[addRow + x];
+                int remove = in[removeRow + x];
+                red[x] += ((add >> 16) & 0xFF) - ((remove >> 16) & 0xFF);
+                green[x] += ((add >> 8) & 0xFF) - ((remove >> 8) & 0xFF);
+                blue[x] += (add & 0xFF) - (remove & 0xFF);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.light.renderscripttest;
+
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Turns the rectangles that changed in an input image into the rectangles of output a filter must redo.
+// Each rectangle is grown by the filter's footprint and clipped to the image, and overlapping results are
+// merged so no output pixel is computed twice. Merging takes the bounding box, which may add a few
+// unchanged pixels when two rectangles only overlap at a corner.
+public final class DirtyRegions {
+
+    private DirtyRegions() {
+    }
+
+    // Output rectangles affected by changes in dirty, for a filter reading `margin` pixels around each output
+    public static List<Rect> affected(List<Rect> dirty, int margin, int width, int height) {
+        List<Rect> merged = new ArrayList<>();
+        for (Rect rect : dirty) {
+            Rect grown = new Rect(rect.left - margin, rect.top - margin, rect.right + margin, rect.bottom + margin);
+            if (!grown.intersect(0, 0, width, height) || grown.isEmpty()) {
+                continue;
+            }
+            // A union can reach rectangles it did not overlap before, so keep absorbing until none overlap
+            boolean absorbed = true;
+            while (absorbed) {
+                absorbed = false;
+                for (int i = 0; i < merged.size(); i++) {
+                    if (Rect.intersects(grown, merged.get(i))) {
+                        grown.union(merged.remove(i));
+                        absorbed = true;
+                        break;
+                    }
+                }
+            }
+            merged.add(grown);
+        }
+        return merged;
+    }
+
+    public static long area(List<Rect> rects) {
+        long area = 0;
+        for (Rect rect : rects) {
+            area += (long) rect.width() * rect.height();
+        }
+        return area;
+    }
+}
@@ -0,0 +1,370 @@
+package com.light.renderscripttest;
+
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Continuous processing of a stream of equally sized frames through a chain of PixelFilter stages.
+// Three threads overlap the work: the producer captures frame N+2 while the processor filters N+1 and
+// the consumer uses N. Frames live in a fixed ring of buffers allocated up front; when the producer
+// finds no free input buffer at its next capture time, that frame is dropped, as a camera would.
+// When the source reports how far its content panned and every stage is a RegionFilter, the processor
+// keeps each stage's last output, shifts it by the pan and recomputes only the strips the pan exposed.
+public class FrameStreamProcessor {
+    private static final String TAG = "FrameStreamProcessor";
+
+    public interface FrameSource {
+        void fill(int[] frame, int width, int height, long index);
+    }
+
+    public interface PanningSource extends FrameSource {
+        // Columns the content moved left from frame `from` to frame `to` (frame to at x shows frame from
+        // at x + shift), or -1 when the two frames are not related by a horizontal pan
+        int shift(long from, long to);
+    }
+
+    public interface FrameConsumer {
+        void consume(int[] frame, int width, int height, long index);
+    }
+
+    public static class Stats {
+        public final long frames;
+        public final long dropped;
+        // Frames a stage or the consumer threw on; their buffers go back to the ring
+        public final long failed;
+        // Frames recomputed only where the pan exposed new content
+        public final long incremental;
+        public final double fps;
+        // Mean and standard deviation of the interval between consecutive consumed frames
+        public final double meanFrameMs;
+        public final double jitterMs;
+        // Capture to consumed
+        public final double meanLatencyMs;
+        public final double maxLatencyMs;
+
+        Stats(long frames, long dropped, long failed, long incremental, double fps, double meanFrameMs,
+              double jitterMs, double meanLatencyMs, double maxLatencyMs) {
+            this.frames = frames;
+            this.dropped = dropped;
+            this.failed = failed;
+            this.incremental = incremental;
+            this.fps = fps;
+            this.meanFrameMs = meanFrameMs;
+            this.jitterMs = jitterMs;
+            this.meanLatencyMs = meanLatencyMs;
+            this.maxLatencyMs = maxLatencyMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%.1f fps over %d frames (%d incremental), %d dropped, %d failed, frame %.2f ± %.2f ms, "
+                            + "latency avg %.2f max %.2f ms",
+                    fps, frames, incremental, dropped, failed, meanFrameMs, jitterMs, meanLatencyMs, maxLatencyMs);
+        }
+    }
+
+    private static class Slot {
+        final int[] pixels;
+        long index;
+        long captureNanos;
+
+        Slot(int length) {
+            pixels = new int[length];
+        }
+    }
+
+    private static final Slot END = new Slot(0);
+
+    private final int width, height;
+    private final List<PixelFilter> stages;
+    private final long framePeriodNanos;
+    private final BlockingQueue<Slot> freeInput, captured, freeOutput, processed;
+    private final int[] scratch;
+
+    private volatile boolean running;
+    private Thread producer, processor, consumerThread;
+
+    // Incremental mode only, processor thread: each stage's output for frame historyIndex
+    private PanningSource panning;
+    private int[][] history;
+    private long historyIndex = -1;
+
+    // Metrics, written by the consumer thread and read under the lock
+    private final Object statsLock = new Object();
+    private long frames, dropped, failed, incremental, firstNanos, lastNanos;
+    private double intervalSum, intervalSquares, latencySum, latencyMax;
+
+    // ringSize buffers per side (>= 2 for double buffering); targetFps <= 0 captures as fast as possible
+    public FrameStreamProcessor(int width, int height, List<PixelFilter> stages, int ringSize, float targetFps) {
+        if (ringSize < 2) {
+            throw new IllegalArgumentException("ringSize must be at least 2");
+        }
+        this.width = width;
+        this.height = height;
+        this.stages = new ArrayList<>(stages);
+        this.framePeriodNanos = targetFps > 0 ? (long) (1e9 / targetFps) : 0;
+        int length = width * height;
+        freeInput = new ArrayBlockingQueue<>(ringSize);
+        captured = new ArrayBlockingQueue<>(ringSize + 1);
+        freeOutput = new ArrayBlockingQueue<>(ringSize);
+        processed = new ArrayBlockingQueue<>(ringSize + 1);
+        for (int i = 0; i < ringSize; i++) {
+            freeInput.add(new Slot(length));
+            freeOutput.add(new Slot(length));
+        }
+        scratch = stages.size() > 1 ? new int[length] : null;
+    }
+
+    public synchronized void start(FrameSource source, FrameConsumer consumer) {
+        if (running) {
+            throw new IllegalStateException("Stream already running");
+        }
+        running = true;
+        panning = source instanceof PanningSource && supportsRegions() ? (PanningSource) source : null;
+        if (panning != null && history == null) {
+            history = new int[stages.size()][width * height];
+        }
+        historyIndex = -1;
+        producer = new Thread(() -> produce(source), "stream-producer");
+        processor = new Thread(this::process, "stream-processor");
+        consumerThread = new Thread(() -> consume(consumer), "stream-consumer");
+        processor.start();
+        consumerThread.start();
+        producer.start();
+    }
+
+    // Stops capturing, lets frames already captured drain through, then returns. The producer is interrupted,
+    // since with no target fps it may be blocked waiting for a free buffer.
+    public void stop() throws InterruptedException {
+        Thread p, q, c;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            p = producer;
+            q = processor;
+            c = consumerThread;
+        }
+        p.interrupt();
+        p.join();
+        q.join();
+        c.join();
+    }
+
+    public Stats getStats() {
+        synchronized (statsLock) {
+            long intervals = Math.max(0, frames - 1);
+            double meanInterval = intervals == 0 ? 0 : intervalSum / intervals;
+            double variance = intervals == 0 ? 0 : Math.max(0, intervalSquares / intervals - meanInterval * meanInterval);
+            double elapsed = (lastNanos - firstNanos) / 1e9;
+            double fps = elapsed > 0 ? intervals / elapsed : 0;
+            return new Stats(frames, dropped, failed, incremental, fps, meanInterval / 1e6, Math.sqrt(variance) / 1e6,
+                    frames == 0 ? 0 : latencySum / frames / 1e6, latencyMax / 1e6);
+        }
+    }
+
+    private void produce(FrameSource source) {
+        long index = 0;
+        long nextCapture = System.nanoTime();
+        try {
+            while (running) {
+                if (framePeriodNanos > 0) {
+                    long wait = nextCapture - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    nextCapture += framePeriodNanos;
+                }
+                Slot slot = framePeriodNanos > 0 ? freeInput.poll() : freeInput.take();
+                if (slot == null) {
+                    // Every buffer is still in flight; a real sensor would overwrite this frame
+                    synchronized (statsLock) {
+                        dropped++;
+                    }
+                    index++;
+                    continue;
+                }
+                slot.index = index++;
+                slot.captureNanos = System.nanoTime();
+                source.fill(slot.pixels, width, height, slot.index);
+                captured.put(slot);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            captured.offer(END);
+        }
+    }
+
+    private void process() {
+        try {
+            Slot in;
+            while ((in = captured.take()) != END) {
+                Slot out = freeOutput.take();
+                try {
+                    if (panning != null) {
+                        runTracked(in, out.pixels);
+                    } else {
+                        runStages(in.pixels, out.pixels);
+                    }
+                } catch (RuntimeException e) {
+                    // Skip the frame but keep both buffers in the ring, or the producer runs dry. The stage
+                    // history may be half updated, so the next frame starts over.
+                    historyIndex = -1;
+                    Log.w(TAG, "Stage failed on frame " + in.index, e);
+                    countFailure();
+                    freeOutput.put(out);
+                    freeInput.put(in);
+                    continue;
+                }
+                out.index = in.index;
+                out.captureNanos = in.captureNanos;
+                freeInput.put(in);
+                processed.put(out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            processed.offer(END);
+        }
+    }
+
+    // Ping-pongs between the output buffer and one scratch buffer so the last stage lands in out
+    private void runStages(int[] in, int[] out) {
+        if (stages.isEmpty()) {
+            System.arraycopy(in, 0, out, 0, in.length);
+            return;
+        }
+        int n = stages.size();
+        int[] src = in;
+        for (int i = 0; i < n; i++) {
+            int[] dst = ((n - 1 - i) % 2 == 0) ? out : scratch;
+            stages.get(i).apply(src, dst, width, height);
+            src = dst;
+        }
+    }
+
+    private boolean supportsRegions() {
+        if (stages.isEmpty()) {
+            return false;
+        }
+        for (PixelFilter stage : stages) {
+            if (!(stage instanceof RegionFilter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Runs the stages through the history buffers. When this frame is the last one panned left by fewer
+    // than width columns, each stage's previous output is shifted to match, and only the exposed right
+    // strip plus the left strip (whose edge handling changed) are dirty for the first stage; later stages
+    // redo what the stage before them rewrote.
+    private void runTracked(Slot in, int[] out) {
+        int shift = historyIndex >= 0 ? panning.shift(historyIndex, in.index) : -1;
+        int n = stages.size();
+        if (shift < 0 || shift >= width) {
+            for (int i = 0; i < n; i++) {
+                stages.get(i).apply(i == 0 ? in.pixels : history[i - 1], history[i], width, height);
+            }
+        } else {
+            List<Rect> dirty = shift == 0 ? Collections.<Rect>emptyList() : new ArrayList<Rect>();
+            if (shift > 0) {
+                dirty.add(new Rect(0, 0, shift, height));
+                dirty.add(new Rect(width - shift, 0, width, height));
+            }
+            for (int i = 0; i < n; i++) {
+                shiftLeft(history[i], shift);
+                dirty = ((RegionFilter) stages.get(i)).applyRegions(i == 0 ? in.pixels : history[i - 1],
+                        history[i], width, height, dirty);
+            }
+            synchronized (statsLock) {
+                incremental++;
+            }
+        }
+        historyIndex = in.index;
+        System.arraycopy(history[n - 1], 0, out, 0, out.length);
+    }
+
+    // The vacated right columns keep stale values; they are inside the dirty strip
+    private void shiftLeft(int[] pixels, int shift) {
+        if (shift == 0) {
+            return;
+        }
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(pixels, y * width + shift, pixels, y * width, width - shift);
+        }
+    }
+
+    private void consume(FrameConsumer consumer) {
+        try {
+            Slot slot;
+            while ((slot = processed.take()) != END) {
+                try {
+                    consumer.consume(slot.pixels, width, height, slot.index);
+                    record(slot.captureNanos, System.nanoTime());
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Consumer failed on frame " + slot.index, e);
+                    countFailure();
+                }
+                freeOutput.put(slot);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void countFailure() {
+        synchronized (statsLock) {
+            failed++;
+        }
+    }
+
+    private void record(long captureNanos, long now) {
+        synchronized (statsLock) {
+            if (frames == 0) {
+                firstNanos = now;
+            } else {
+                double interval = now - lastNanos;
+                intervalSum += interval;
+                intervalSquares += interval * interval;
+            }
+            lastNanos = now;
+            frames++;
+            double latency = now - captureNanos;
+            latencySum += latency;
+            latencyMax = Math.max(latencyMax, latency);
+        }
+    }
+
+    // Source that pans a window across a larger generated image, one pixel per frame
+    public static PanningSource panningSource(SyntheticImage.Pattern pattern, int width, int height, long seed) {
+        int sourceWidth = width * 2;
+        int[] scene = SyntheticImage.generate(pattern, sourceWidth, height, seed, new PixelBufferPool(0));
+        return new PanningSource() {
+            @Override
+            public void fill(int[] frame, int w, int h, long index) {
+                int offset = (int) (index % width);
+                for (int y = 0; y < h; y++) {
+                    System.arraycopy(scene, y * sourceWidth + offset, frame, y * w, w);
+                }
+            }
+
+            // The window jumps back to the start every `width` frames
+            @Override
+            public int shift(long from, long to) {
+                long shift = to % width - from % width;
+                return to >= from && to - from < width && shift >= 0 ? (int) shift : -1;
+            }
+        };
+    }
+}
@@ -2,10 +2,15 @@ package com.light.renderscripttest;
 
 import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.graphics.Rect;
+
+import java.util.List;
 
 
 
 public class GaussianBlur {
+    // Bump whenever the output changes so cached results are not reused
+    public static final int VERSION = 2;
 
     private float[] kernel;  // Store the kernel for reuse
     private int radius;
@@ -18,8 +23,20 @@ public class GaussianBlur {
         this.kernel = createGaussianKernel(radius, sigma);  // Precompute the kernel
     }
 
+    public int getRadius() {
+        return radius;
+    }
+
+    public float getSigma() {
+        return sigma;
+    }
+
     // Apply Gaussian Blur with precomputed kernel
     public Bitmap applyGaussianBlur(Bitmap sentBitmap) {
+        return applyGaussianBlur(sentBitmap, 1);
+    }
+
+    public Bitmap applyGaussianBlur(Bitmap sentBitmap, int threads) {
         int width = sentBitmap.getWidth();
         int height = sentBitmap.getHeight();
         Bitmap blurredBitmap = Bitmap.createBitmap(width, height, sentBitmap.getConfig());
@@ -28,11 +45,68 @@ public class GaussianBlur {
         int[] pixels = new int[width * height];
         sentBitmap.getPixels(pixels, 0, width, 0, 0, width, height);
 
+        int[] blurred = new int[width * height];
+        blur(pixels, blurred, width, height, threads);
+
+        blurredBitmap.setPixels(blurred, 0, width, 0, 0, width, height);
+        return blurredBitmap;
+    }
+
+    // Blur ARGB pixels into out, splitting both passes into row bands across threads
+    public void blur(int[] pixels, int[] out, int width, int height, int threads) {
         int[] horizontalBlurred = new int[width * height];
 
         // First pass: Horizontal blur
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) ->
+                horizontalPass(pixels, horizontalBlurred, width, 0, width, startRow, endRow));
+
+        // Second pass: Vertical blur
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) ->
+                verticalPass(horizontalBlurred, out, width, height, 0, width, startRow, endRow));
+    }
+
+    // Unsharp mask: original + amount * (original - blurred), per channel, where the difference is at least
+    // threshold levels; smaller differences keep the original so flat areas and noise are not amplified.
+    // The difference is taken inside the vertical pass, so this needs the same memory as blur().
+    public void sharpen(int[] pixels, int[] out, int width, int height, float amount, int threshold, int threads) {
+        int[] horizontalBlurred = new int[width * height];
+
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) ->
+                horizontalPass(pixels, horizontalBlurred, width, 0, width, startRow, endRow));
+
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) ->
+                verticalSharpenPass(pixels, horizontalBlurred, out, width, height, amount, threshold, startRow, endRow));
+    }
+
+    // Re-blurs only the output that depends on the dirty rectangles of pixels. out must hold the blur of the
+    // previous input; everything outside the returned rectangles is left as it was.
+    public List<Rect> blurRegions(int[] pixels, int[] out, int width, int height, List<Rect> dirty, int threads) {
+        List<Rect> regions = DirtyRegions.affected(dirty, radius, width, height);
+        PixelBufferPool pool = PixelBufferPool.shared();
+        // Full-size so indices match the image; only the rows and columns of each region are written
+        int[] horizontalBlurred = pool.acquire(width * height);
+        try {
+            for (Rect region : regions) {
+                // The vertical pass reads `radius` rows above and below the region
+                int top = Math.max(0, region.top - radius);
+                int bottom = Math.min(height, region.bottom + radius);
+                ParallelRows.forEachBand(bottom - top, threads, (startRow, endRow) ->
+                        horizontalPass(pixels, horizontalBlurred, width, region.left, region.right,
+                                top + startRow, top + endRow));
+                ParallelRows.forEachBand(region.height(), threads, (startRow, endRow) ->
+                        verticalPass(horizontalBlurred, out, width, height, region.left, region.right,
+                                region.top + startRow, region.top + endRow));
+            }
+        } finally {
+            pool.release(horizontalBlurred);
+        }
+        return regions;
+    }
+
+    private void horizontalPass(int[] pixels, int[] out, int width, int startX, int endX, int startRow, int endRow) {
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            for (int x = startX; x < endX; x++) {
                 float red = 0.0f;
                 float green = 0.0f;
                 float blue = 0.0f;
@@ -41,24 +115,25 @@ public class GaussianBlur {
                 for (int i = -radius; i <= radius; i++) {
                     int neighborX = x + i;
                     if (neighborX >= 0 && neighborX < width) {
-                        int pixel = pixels[y * width + neighborX];
-                        red += Color.red(pixel) * kernel[i + radius];
-                        green += Color.green(pixel) * kernel[i + radius];
-                        blue += Color.blue(pixel) * kernel[i + radius];
+                        int pixel = pixels[row + neighborX];
+                        float k = kernel[i + radius];
+                        red += ((pixel >> 16) & 0xFF) * k;
+                        green += ((pixel >> 8) & 0xFF) * k;
+                        blue += (pixel & 0xFF) * k;
                     }
                 }
 
-                red = Math.max(0, Math.min(255, red));
-                green = Math.max(0, Math.min(255, green));
-                blue = Math.max(0, Math.min(255, blue));
-
-                horizontalBlurred[y * width + x] = Color.argb(255, (int) red, (int) green, (int) blue);
+                out[row + x] = pack(red, green, blue);
             }
         }
+    }
 
-        // Second pass: Vertical blur
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
+    // Row-major so each band streams through contiguous memory
+    private void verticalPass(int[] pixels, int[] out, int width, int height, int startX, int endX,
+                              int startRow, int endRow) {
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            for (int x = startX; x < endX; x++) {
                 float red = 0.0f;
                 float green = 0.0f;
                 float blue = 0.0f;
@@ -67,26 +142,63 @@ public class GaussianBlur {
                 for (int j = -radius; j <= radius; j++) {
                     int neighborY = y + j;
                     if (neighborY >= 0 && neighborY < height) {
-                        int pixel = horizontalBlurred[neighborY * width + x];
-                        red += Color.red(pixel) * kernel[j + radius];
-                        green += Color.green(pixel) * kernel[j + radius];
-                        blue += Color.blue(pixel) * kernel[j + radius];
+                        int pixel = pixels[neighborY * width + x];
+                        float k = kernel[j + radius];
+                        red += ((pixel >> 16) & 0xFF) * k;
+                        green += ((pixel >> 8) & 0xFF) * k;
+                        blue += (pixel & 0xFF) * k;
                     }
                 }
 
-                red = Math.max(0, Math.min(255, red));
-                green = Math.max(0, Math.min(255, green));
-                blue = Math.max(0, Math.min(255, blue));
+                out[row + x] = pack(red, green, blue);
+            }
+        }
+    }
 
-                blurredBitmap.setPixel(x, y, Color.argb(255, (int) red, (int) green, (int) blue));
+    // verticalPass, with each blurred value folded straight into the sharpened output
+    private void verticalSharpenPass(int[] original, int[] pixels, int[] out, int width, int height, float amount,
+                                     int threshold, int startRow, int endRow) {
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                float red = 0.0f;
+                float green = 0.0f;
+                float blue = 0.0f;
+
+                for (int j = -radius; j <= radius; j++) {
+                    int neighborY = y + j;
+                    if (neighborY >= 0 && neighborY < height) {
+                        int pixel = pixels[neighborY * width + x];
+                        float k = kernel[j + radius];
+                        red += ((pixel >> 16) & 0xFF) * k;
+                        green += ((pixel >> 8) & 0xFF) * k;
+                        blue += (pixel & 0xFF) * k;
+                    }
+                }
+
+                int pixel = original[row + x];
+                out[row + x] = pack(sharpen((pixel >> 16) & 0xFF, red, amount, threshold),
+                        sharpen((pixel >> 8) & 0xFF, green, amount, threshold),
+                        sharpen(pixel & 0xFF, blue, amount, threshold));
             }
         }
+    }
 
-        return blurredBitmap;
+    private static float sharpen(int original, float blurred, float amount, int threshold) {
+        float difference = original - blurred;
+        return Math.abs(difference) >= threshold ? original + amount * difference : original;
+    }
+
+    // Rounds to nearest, so the reference BlurSelector measures approximations against is not biased dark
+    private static int pack(float red, float green, float blue) {
+        red = Math.max(0, Math.min(255, red));
+        green = Math.max(0, Math.min(255, green));
+        blue = Math.max(0, Math.min(255, blue));
+        return Color.argb(255, (int) (red + 0.5f), (int) (green + 0.5f), (int) (blue + 0.5f));
     }
 
     // Create a Gaussian kernel for a given radius and sigma
-    private float[] createGaussianKernel(int radius, float sigma) {
+    static float[] createGaussianKernel(int radius, float sigma) {
         int kernelSize = radius * 2 + 1;
         float[] kernel = new float[kernelSize];
         float sum = 0.0f;
@@ -8,7 +8,9 @@ import android.graphics.ColorMatrixColorFilter;
 import android.graphics.RenderEffect;
 import android.os.Build;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Choreographer;
+import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
 
@@ -16,17 +18,22 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.renderscript.Allocation;
 import androidx.renderscript.RenderScript;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 public class GrayscaleActivity extends AppCompatActivity {
+    private static final String TAG = "GrayscaleActivity";
     private Bitmap mBitmapIn, mBitmapOutRS, mBitmapOutJava;
-    private ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final ProcessingScheduler scheduler = ProcessingScheduler.getInstance();
+    // Guards the allocations against release while an RS run is still using them
+    private final Object rsLock = new Object();
+    private boolean rsReleased;
     private MyGLSurfaceView glSurfaceView;
     public long timeJava, timeRS, timeGL;
+    // The optional contrast stage, kept out of timeJava
+    public long timeContrast;
     private RenderScript rs;
     private Allocation inAllocation, outAllocation;
     private ScriptC_grayscale script;
+    // Optional contrast stage after the Java grayscale: "equalize" or "clahe"
+    private String contrast;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -35,78 +42,140 @@ public class GrayscaleActivity extends AppCompatActivity {
 
         Intent intent = getIntent();
         int size = intent.getIntExtra("size", 256);
+        contrast = intent.getStringExtra("contrast");
+        int resource = R.drawable.i256x256;
         switch (size) {
-            case 256:
-                mBitmapIn = loadBitmap(R.drawable.i256x256);
-                break;
             case 640:
-                mBitmapIn = loadBitmap(R.drawable.i640x480);
+                resource = R.drawable.i640x480;
                 break;
             case 1024:
-                mBitmapIn = loadBitmap(R.drawable.i1024x1024);
+                resource = R.drawable.i1024x1024;
                 break;
             case 1920:
-                mBitmapIn = loadBitmap(R.drawable.i1920x1080);
+                resource = R.drawable.i1920x1080;
                 break;
         }
 
-        int w = mBitmapIn.getWidth();
-        int h = mBitmapIn.getHeight();
-        // Display input image
-        ImageView in = findViewById(R.id.inputImage);
-        in.setImageBitmap(mBitmapIn);
-
-        mBitmapOutRS = Bitmap.createBitmap(w, h, mBitmapIn.getConfig());
-        mBitmapOutJava = Bitmap.createBitmap(w, h, mBitmapIn.getConfig());
-
         TextView timeViewJava = findViewById(R.id.timeJava);
         TextView timeViewRS = findViewById(R.id.timeRS);
         glSurfaceView = findViewById(R.id.outputGL);
+        // Its surface must not be created before the renderer is set, and that waits for the input
+        glSurfaceView.setVisibility(View.GONE);
 
-        rs = RenderScript.create(this);
-        inAllocation = Allocation.createFromBitmap(rs, mBitmapIn, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
-        outAllocation = Allocation.createTyped(rs, inAllocation.getType());
-        script = new ScriptC_grayscale(rs);
+        // Reuse the app-wide RenderScript context and script
+        rs = scheduler.getRenderScript(this);
+        script = scheduler.backend(this, ScriptC_grayscale.class, ScriptC_grayscale::new);
 
+        // Load the input, then benchmark Java grayscale, then RenderScript grayscale; one request so the two
+        // timings never overlap. Generating or resizing large inputs takes seconds, so none of it runs on this thread
+        final int inputResource = resource;
+        scheduler.submit(TAG, ProcessingScheduler.Lane.INTERACTIVE, () -> {
+            if (!loadInput(inputResource)) {
+                return;
+            }
+            runOnUiThread(this::bindInput);
 
-        // Benchmark GLSurfaceView rendering
-        benchmarkGLRendering();
-
-        // Apply RenderEffect
-        ImageView render = findViewById(R.id.outputRender);
-        render.setImageBitmap(mBitmapIn);
-        applyGrayscaleEffect(render);
-
-        // Benchmark Java grayscale
-        executorService.execute(() -> {
             applyGrayscaleJava();
             runOnUiThread(() -> {
                 ImageView outputJava = findViewById(R.id.outputJava);
                 outputJava.setImageBitmap(mBitmapOutJava);
-                timeViewJava.setText("Time Java: " + timeJava + " μs");
+                timeViewJava.setText(contrast != null
+                        ? "Time Java: " + timeJava + " μs, " + contrast + " " + timeContrast + " μs"
+                        : "Time Java: " + timeJava + " μs");
             });
-        });
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
 
-        // Benchmark RenderScript grayscale
-        executorService.execute(() -> {
             applyGrayscaleRS();
             runOnUiThread(() -> {
                 ImageView outputRS = findViewById(R.id.outputRS);
                 outputRS.setImageBitmap(mBitmapOutRS);
                 timeViewRS.setText("Time RS: " + timeRS + " μs");
             });
+            if (contrast != null && !Thread.currentThread().isInterrupted()) {
+                logHistogramBenchmark();
+            }
         });
     }
 
+    // Worker thread: input bitmap, outputs and allocations. False once the screen has gone
+    private boolean loadInput(int resource) {
+        Bitmap bitmap = loadBitmap(resource);
+        synchronized (rsLock) {
+            if (rsReleased || Thread.currentThread().isInterrupted()) {
+                bitmap.recycle();
+                return false;
+            }
+            int w = bitmap.getWidth();
+            int h = bitmap.getHeight();
+            mBitmapIn = bitmap;
+            mBitmapOutRS = Bitmap.createBitmap(w, h, bitmap.getConfig());
+            mBitmapOutJava = Bitmap.createBitmap(w, h, bitmap.getConfig());
+            inAllocation = Allocation.createFromBitmap(rs, mBitmapIn, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
+            outAllocation = Allocation.createTyped(rs, inAllocation.getType());
+            return true;
+        }
+    }
+
+    // UI thread, once the input is loaded
+    private void bindInput() {
+        if (isDestroyed()) {
+            return;
+        }
+        ImageView in = findViewById(R.id.inputImage);
+        in.setImageBitmap(mBitmapIn);
+
+        // Benchmark GLSurfaceView rendering
+        benchmarkGLRendering();
+        glSurfaceView.setVisibility(View.VISIBLE);
+
+        // Apply RenderEffect
+        ImageView render = findViewById(R.id.outputRender);
+        render.setImageBitmap(mBitmapIn);
+        applyGrayscaleEffect(render);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        scheduler.cancel(TAG);
+        // The allocations belong to this screen; the context and script stay alive for the next one.
+        // Released here rather than queued, as a full queue could reject the cleanup; an RS run still in
+        // flight holds rsLock until its kernel returns
+        synchronized (rsLock) {
+            rsReleased = true;
+            // Null while the input is still loading
+            if (inAllocation != null) {
+                inAllocation.destroy();
+                outAllocation.destroy();
+            }
+        }
+    }
+
     private void warmUp() {
         applyGrayscaleJava();
         applyGrayscaleRS();
     }
 
     private Bitmap loadBitmap(int resource) {
+        // A generated image requested through the intent replaces the bundled drawable
+        Bitmap synthetic = SyntheticImage.fromIntent(getIntent());
+        if (synthetic != null) {
+            return synthetic;
+        }
         final BitmapFactory.Options options = new BitmapFactory.Options();
         options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-        return BitmapFactory.decodeResource(getResources(), resource, options);
+        Bitmap bitmap = BitmapFactory.decodeResource(getResources(), resource, options);
+        // Sizes without a drawable of their own are scaled from it
+        int width = getIntent().getIntExtra("width", bitmap.getWidth());
+        int height = getIntent().getIntExtra("height", bitmap.getHeight());
+        if (width != bitmap.getWidth() || height != bitmap.getHeight()) {
+            Bitmap scaled = ResizeEngine.resize(bitmap, width, height, ResizeEngine.Kernel.LANCZOS3, ParallelRows.CORES);
+            bitmap.recycle();
+            return scaled;
+        }
+        return bitmap;
     }
 
     private void applyGrayscaleJava() {
@@ -115,18 +184,35 @@ public class GrayscaleActivity extends AppCompatActivity {
         int[] pixels = new int[width * height];
         long startTime = System.nanoTime();
         mBitmapIn.getPixels(pixels, 0, width, 0, 0, width, height);
-        for (int i = 0; i < pixels.length; i++) {
-            int pixel = pixels[i];
-            int r = (pixel >> 16) & 0xFF;
-            int g = (pixel >> 8) & 0xFF;
-            int b = pixel & 0xFF;
-            int gray = (int) (0.299 * r + 0.587 * g + 0.114 * b);
-            pixels[i] = (0xFF << 24) | (gray << 16) | (gray << 8) | gray;
-        }
+        GrayscaleFilter.apply(pixels, pixels, pixels.length);
         mBitmapOutJava.setPixels(pixels, 0, width, 0, 0, width, height);
 
         long endTime = System.nanoTime();
         timeJava = (endTime - startTime) / 1000;
+        if (contrast == null) {
+            return;
+        }
+
+        // Timed on its own so "Time Java" stays comparable with RS and GL, which only convert to gray
+        long contrastStart = System.nanoTime();
+        if ("equalize".equals(contrast)) {
+            HistogramEngine.equalize(pixels, pixels, pixels.length, ParallelRows.CORES);
+        } else if ("clahe".equals(contrast)) {
+            int[] gray = pixels.clone();
+            HistogramEngine.clahe(gray, pixels, width, height, 8, 8, 2f, ParallelRows.CORES);
+        }
+        timeContrast = (System.nanoTime() - contrastStart) / 1000;
+        mBitmapOutJava.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    // Multi-threaded histogram work against the single-threaded baseline, on this screen's gray input
+    private void logHistogramBenchmark() {
+        int width = mBitmapIn.getWidth();
+        int height = mBitmapIn.getHeight();
+        int[] pixels = new int[width * height];
+        mBitmapIn.getPixels(pixels, 0, width, 0, 0, width, height);
+        GrayscaleFilter.apply(pixels, pixels, pixels.length);
+        Log.i(TAG, "Histogram engine:\n" + HistogramEngine.benchmark(pixels, width, height, ParallelRows.CORES));
     }
 
     private void applyGrayscaleEffect(ImageView imageView) {
@@ -155,13 +241,17 @@ public class GrayscaleActivity extends AppCompatActivity {
 
 
     private void applyGrayscaleRS() {
-        long startTime = System.nanoTime();
-        script.forEach_root(inAllocation, outAllocation);
-        outAllocation.copyTo(mBitmapOutRS);
-        long endTime = System.nanoTime();
+        synchronized (rsLock) {
+            if (rsReleased) {
+                return;
+            }
+            long startTime = System.nanoTime();
+            script.forEach_root(inAllocation, outAllocation);
+            outAllocation.copyTo(mBitmapOutRS);
+            long endTime = System.nanoTime();
 
-        timeRS = (endTime - startTime) / 1000;
-        rs.destroy();
+            timeRS = (endTime - startTime) / 1000;
+        }
     }
     private void benchmarkGLRendering() {
         // Get the aspect ratio of the bitmap
@@ -0,0 +1,19 @@
+package com.light.renderscripttest;
+
+// BT.601 luma grayscale of ARGB pixels; pixels and out may be the same array
+public final class GrayscaleFilter {
+
+    private GrayscaleFilter() {
+    }
+
+    public static void apply(int[] pixels, int[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            int pixel = pixels[i];
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            int gray = (int) (0.299 * r + 0.587 * g + 0.114 * b);
+            out[i] = (0xFF << 24) | (gray << 16) | (gray << 8) | gray;
+        }
+    }
+}
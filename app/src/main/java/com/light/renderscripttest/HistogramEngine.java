@@ -0,0 +1,192 @@
+package com.light.renderscripttest;
+
+import java.util.Locale;
+
+// 256-bin histograms, global histogram equalization and CLAHE on gray ARGB pixels (the output of
+// GrayscaleFilter); the value is read from the low byte and written to every channel.
+// Each thread fills a private histogram over its own band and the bands are summed at the end, so the
+// threads never share a counter. Inside a band four interleaved sub-histograms keep runs of equal
+// pixels from serializing on a single counter.
+public final class HistogramEngine {
+
+    public static final int BINS = 256;
+
+    private HistogramEngine() {
+    }
+
+    public static int[] histogram(int[] pixels, int length, int threads) {
+        int[] total = new int[BINS];
+        ParallelRows.forEachBand(length, threads, (start, end) -> {
+            int[] local = countRange(pixels, start, end);
+            synchronized (total) {
+                for (int i = 0; i < BINS; i++) {
+                    total[i] += local[i];
+                }
+            }
+        });
+        return total;
+    }
+
+    // Spreads the cumulative histogram over 0..255; pixels and out may be the same array
+    public static void equalize(int[] pixels, int[] out, int length, int threads) {
+        int[] lut = equalizationTable(histogram(pixels, length, threads), length);
+        ParallelRows.forEachBand(length, threads, (start, end) -> applyTable(pixels, out, lut, start, end));
+    }
+
+    static int[] equalizationTable(int[] histogram, int length) {
+        int[] lut = new int[BINS];
+        int first = 0;
+        while (first < BINS - 1 && histogram[first] == 0) {
+            first++;
+        }
+        // The darkest value present maps to 0; a flat image is left as it is
+        int below = histogram[first];
+        int range = length - below;
+        for (int v = 0; v < BINS; v++) {
+            if (v > first) {
+                below += histogram[v];
+            }
+            lut[v] = range <= 0 ? v : v < first ? 0 : (int) (255L * (below - histogram[first]) / range);
+        }
+        return lut;
+    }
+
+    // Contrast-limited adaptive equalization over a tilesX x tilesY grid. clipLimit is a multiple of the
+    // mean bin count; counts above it are spread over all bins before each tile's table is built, and
+    // every pixel blends the tables of its four nearest tile centers. pixels and out must not alias.
+    public static void clahe(int[] pixels, int[] out, int width, int height, int tilesX, int tilesY,
+                             float clipLimit, int threads) {
+        tilesX = Math.max(1, Math.min(tilesX, width));
+        tilesY = Math.max(1, Math.min(tilesY, height));
+        int tileWidth = (width + tilesX - 1) / tilesX;
+        int tileHeight = (height + tilesY - 1) / tilesY;
+        int columns = (width + tileWidth - 1) / tileWidth;
+        int rows = (height + tileHeight - 1) / tileHeight;
+        int[][] tables = new int[columns * rows][];
+
+        ParallelRows.forEachBand(rows, threads, (startTile, endTile) -> {
+            for (int ty = startTile; ty < endTile; ty++) {
+                int y0 = ty * tileHeight;
+                int y1 = Math.min(height, y0 + tileHeight);
+                for (int tx = 0; tx < columns; tx++) {
+                    int x0 = tx * tileWidth;
+                    int x1 = Math.min(width, x0 + tileWidth);
+                    int[] histogram = new int[BINS];
+                    for (int y = y0; y < y1; y++) {
+                        int row = y * width;
+                        for (int x = x0; x < x1; x++) {
+                            histogram[pixels[row + x] & 0xFF]++;
+                        }
+                    }
+                    int count = (x1 - x0) * (y1 - y0);
+                    clip(histogram, Math.max(1, (int) (clipLimit * count / BINS)));
+                    tables[ty * columns + tx] = cumulativeTable(histogram, count);
+                }
+            }
+        });
+
+        // Horizontal blend is the same for every row, so work it out once per column
+        int[] left = new int[width];
+        int[] right = new int[width];
+        float[] weight = new float[width];
+        for (int x = 0; x < width; x++) {
+            // Position in tile-center coordinates: tile i's center sits at i
+            float gx = (x + 0.5f) / tileWidth - 0.5f;
+            int tx0 = Math.max(0, Math.min(columns - 1, (int) Math.floor(gx)));
+            left[x] = tx0;
+            right[x] = Math.min(columns - 1, tx0 + 1);
+            weight[x] = Math.max(0f, Math.min(1f, gx - tx0));
+        }
+        int finalRows = rows;
+        int finalColumns = columns;
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) -> {
+            for (int y = startRow; y < endRow; y++) {
+                float gy = (y + 0.5f) / tileHeight - 0.5f;
+                int ty0 = Math.max(0, Math.min(finalRows - 1, (int) Math.floor(gy)));
+                int upper = ty0 * finalColumns;
+                int lower = Math.min(finalRows - 1, ty0 + 1) * finalColumns;
+                float fy = Math.max(0f, Math.min(1f, gy - ty0));
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int v = pixels[row + x] & 0xFF;
+                    float fx = weight[x];
+                    float top = tables[upper + left[x]][v] * (1 - fx) + tables[upper + right[x]][v] * fx;
+                    float bottom = tables[lower + left[x]][v] * (1 - fx) + tables[lower + right[x]][v] * fx;
+                    int gray = (int) (top * (1 - fy) + bottom * fy + 0.5f);
+                    out[row + x] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+                }
+            }
+        });
+    }
+
+    // Times the histogram, equalization and CLAHE on one thread and on `threads`
+    public static String benchmark(int[] pixels, int width, int height, int threads) {
+        int length = width * height;
+        int[] out = PixelBufferPool.shared().acquire(length);
+        BenchmarkHarness harness = new BenchmarkHarness(2, 5);
+        StringBuilder sb = new StringBuilder();
+        try {
+            for (int t : new int[]{1, threads}) {
+                BenchmarkHarness.Result hist = harness.measure(() -> histogram(pixels, length, t));
+                BenchmarkHarness.Result eq = harness.measure(() -> equalize(pixels, out, length, t));
+                BenchmarkHarness.Result clahe = harness.measure(() -> clahe(pixels, out, width, height, 8, 8, 2f, t));
+                sb.append(String.format(Locale.US, "x%d: histogram %d μs, equalize %d μs, CLAHE %d μs%n",
+                        t, hist.medianUs, eq.medianUs, clahe.medianUs));
+            }
+        } finally {
+            PixelBufferPool.shared().release(out);
+        }
+        return sb.toString();
+    }
+
+    private static int[] countRange(int[] pixels, int start, int end) {
+        int[] h0 = new int[BINS], h1 = new int[BINS], h2 = new int[BINS], h3 = new int[BINS];
+        int i = start;
+        for (; i + 3 < end; i += 4) {
+            h0[pixels[i] & 0xFF]++;
+            h1[pixels[i + 1] & 0xFF]++;
+            h2[pixels[i + 2] & 0xFF]++;
+            h3[pixels[i + 3] & 0xFF]++;
+        }
+        for (; i < end; i++) {
+            h0[pixels[i] & 0xFF]++;
+        }
+        for (int v = 0; v < BINS; v++) {
+            h0[v] += h1[v] + h2[v] + h3[v];
+        }
+        return h0;
+    }
+
+    private static void applyTable(int[] pixels, int[] out, int[] lut, int start, int end) {
+        for (int i = start; i < end; i++) {
+            int gray = lut[pixels[i] & 0xFF];
+            out[i] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+        }
+    }
+
+    // Caps every bin at limit and hands the excess out evenly, the remainder one count per bin
+    private static void clip(int[] histogram, int limit) {
+        int excess = 0;
+        for (int v = 0; v < BINS; v++) {
+            if (histogram[v] > limit) {
+                excess += histogram[v] - limit;
+                histogram[v] = limit;
+            }
+        }
+        int share = excess / BINS;
+        int remainder = excess % BINS;
+        for (int v = 0; v < BINS; v++) {
+            histogram[v] += share + (v < remainder ? 1 : 0);
+        }
+    }
+
+    private static int[] cumulativeTable(int[] histogram, int count) {
+        int[] lut = new int[BINS];
+        int sum = 0;
+        for (int v = 0; v < BINS; v++) {
+            sum += histogram[v];
+            lut[v] = (int) (255L * sum / count);
+        }
+        return lut;
+    }
+}
@@ -11,6 +11,22 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 public class MainActivity extends AppCompatActivity {
+    // Menu entries map to ops by position in these lists, never by enum order
+    private static final String[] BATCH_LABELS = {"Grayscale", "Gaussian Blur", "Sobel Operator", "Sobel > Dilate"};
+    private static final PixelFilters.Op[][] BATCH_OPS = {
+            {PixelFilters.Op.GRAYSCALE},
+            {PixelFilters.Op.BLUR},
+            {PixelFilters.Op.SOBEL},
+            {PixelFilters.Op.SOBEL, PixelFilters.Op.DILATE}};
+    private static final String[] STREAM_LABELS = {"Grayscale", "Gaussian Blur", "Sobel Operator", "Blur > Sobel",
+            "Sobel > Dilate", "Sobel > Close"};
+    private static final PixelFilters.Op[][] STREAM_OPS = {
+            {PixelFilters.Op.GRAYSCALE},
+            {PixelFilters.Op.BLUR},
+            {PixelFilters.Op.SOBEL},
+            {PixelFilters.Op.BLUR, PixelFilters.Op.SOBEL},
+            {PixelFilters.Op.SOBEL, PixelFilters.Op.DILATE},
+            {PixelFilters.Op.SOBEL, PixelFilters.Op.CLOSE}};
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -19,9 +35,15 @@ public class MainActivity extends AppCompatActivity {
         TextView textView = findViewById(R.id.textView);
         TextView textView2 = findViewById(R.id.textView2);
         TextView textView3 = findViewById(R.id.textView3);
+        TextView textView4 = findViewById(R.id.textView4);
+        TextView textView5 = findViewById(R.id.textView5);
+        TextView textView6 = findViewById(R.id.textView6);
         Intent intent1 = new Intent(this, GrayscaleActivity.class);
         Intent intent2 = new Intent(this, BlurActivity.class);
         Intent intent3 = new Intent(this, SobelActivity.class);
+        Intent intent4 = new Intent(this, SweepActivity.class);
+        Intent intent5 = new Intent(this, BatchActivity.class);
+        Intent intent6 = new Intent(this, StreamActivity.class);
         ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
         ConfigurationInfo configInfo = activityManager.getDeviceConfigurationInfo();
         boolean supportsEs32 = configInfo.reqGlEsVersion >= 0x30002;
@@ -31,11 +53,20 @@ public class MainActivity extends AppCompatActivity {
         textView.setOnClickListener(v -> showOptions(intent1));
         textView2.setOnClickListener(v -> showOptions(intent2));
         textView3.setOnClickListener(v -> showOptions(intent3));
+        textView4.setOnClickListener(v -> startActivity(intent4));
+        textView5.setOnClickListener(v -> showBatchOptions(intent5));
+        textView6.setOnClickListener(v -> showStreamOptions(intent6));
     }
     private void showOptions(Intent intent){
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Choose image size")
-                .setItems(new String[]{"256x256", "640x480", "1024x1024", "1920x1080"}, (dialog, which) -> {
+                .setItems(new String[]{"256x256", "640x480", "1024x1024", "1920x1080",
+                        "3840x2160 (synthetic)", "7680x4320 (synthetic)", "1280x720 (scaled)",
+                        "3840x2160 (scaled)"}, (dialog, which) -> {
+                    // The intent is reused between picks, so clear any generated or scaled input extras first
+                    intent.removeExtra("pattern");
+                    intent.removeExtra("width");
+                    intent.removeExtra("height");
                     switch (which) {
                         case 0:
                             intent.putExtra("size", 256);
@@ -53,6 +84,18 @@ public class MainActivity extends AppCompatActivity {
                             intent.putExtra("size", 1920);
                             startActivity(intent);
                             break;
+                        case 4:
+                            startSynthetic(intent, 3840, 2160);
+                            break;
+                        case 5:
+                            startSynthetic(intent, 7680, 4320);
+                            break;
+                        case 6:
+                            startScaled(intent, 1280, 720);
+                            break;
+                        case 7:
+                            startScaled(intent, 3840, 2160);
+                            break;
                     }
                 })
                 .setCancelable(true); // Optional: dialog can be dismissed by tapping outside
@@ -61,4 +104,51 @@ public class MainActivity extends AppCompatActivity {
         dialog.show();
 
     }
+
+    private void showBatchOptions(Intent intent) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Choose batch filter")
+                .setItems(BATCH_LABELS, (dialog, which) -> {
+                    intent.putExtra("ops", names(BATCH_OPS[which]));
+                    startActivity(intent);
+                })
+                .setCancelable(true);
+        builder.create().show();
+    }
+
+    private void showStreamOptions(Intent intent) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Choose stream pipeline")
+                .setItems(STREAM_LABELS, (dialog, which) -> {
+                    intent.putExtra("ops", names(STREAM_OPS[which]));
+                    startActivity(intent);
+                })
+                .setCancelable(true);
+        builder.create().show();
+    }
+
+    private static String[] names(PixelFilters.Op[] ops) {
+        String[] names = new String[ops.length];
+        for (int i = 0; i < ops.length; i++) {
+            names[i] = ops[i].name();
+        }
+        return names;
+    }
+
+    private void startScaled(Intent intent, int width, int height) {
+        // Scaled from the 1920x1080 drawable, with its parameter presets
+        intent.putExtra("size", 1920);
+        intent.putExtra("width", width);
+        intent.putExtra("height", height);
+        startActivity(intent);
+    }
+
+    private void startSynthetic(Intent intent, int width, int height) {
+        // Large sizes reuse the 1920x1080 parameter presets
+        intent.putExtra("size", 1920);
+        intent.putExtra("pattern", SyntheticImage.Pattern.NATURAL.name());
+        intent.putExtra("width", width);
+        intent.putExtra("height", height);
+        startActivity(intent);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.light.renderscripttest;
+
+import java.util.Arrays;
+
+// Square (2 * radius + 1)^2 median of each RGB channel, after Perreault & Hébert, "Median Filtering in
+// Constant Time" (2007). Every column keeps a histogram of the window's rows that slides down one row at a
+// time, and the window histogram slides right by adding one column histogram and removing another.
+// Histograms are two-level, 16 coarse bins over 256 fine ones: the coarse level finds the 16-value
+// range holding the median, and only that range's fine bins are brought up to date, lazily. The cost
+// per pixel therefore does not grow with the radius. Edges are replicated.
+public final class MedianFilter {
+    // Bump whenever the output changes so cached results are not reused
+    public static final int VERSION = 1;
+
+    private static final int BINS = 256;
+    private static final int COARSE = 16;
+
+    private MedianFilter() {
+    }
+
+    public static void apply(int[] pixels, int[] out, int width, int height, int radius, int threads) {
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) ->
+                new Band(pixels, out, width, height, radius).run(startRow, endRow));
+    }
+
+    // Histograms for one row band; each band starts its column histograms from scratch
+    private static final class Band {
+        final int[] pixels, out;
+        final int width, height, radius;
+        final int[] columnFine, columnCoarse;
+        final int[] kernelFine = new int[BINS];
+        final int[] kernelCoarse = new int[COARSE];
+        // Column at which each coarse bin's slice of kernelFine was last valid
+        final int[] fineValidAt = new int[COARSE];
+
+        Band(int[] pixels, int[] out, int width, int height, int radius) {
+            this.pixels = pixels;
+            this.out = out;
+            this.width = width;
+            this.height = height;
+            this.radius = radius;
+            columnFine = new int[width * BINS];
+            columnCoarse = new int[width * COARSE];
+        }
+
+        void run(int startRow, int endRow) {
+            // One channel at a time so the column histograms are allocated once per band
+            for (int shift = 16; shift >= 0; shift -= 8) {
+                Arrays.fill(columnFine, 0);
+                Arrays.fill(columnCoarse, 0);
+                for (int dy = -radius; dy <= radius; dy++) {
+                    addRow(clampRow(startRow + dy), shift, 1);
+                }
+                for (int y = startRow; y < endRow; y++) {
+                    if (y > startRow) {
+                        addRow(clampRow(y - radius - 1), shift, -1);
+                        addRow(clampRow(y + radius), shift, 1);
+                    }
+                    filterRow(y, shift);
+                }
+            }
+        }
+
+        private int clampRow(int y) {
+            return Math.max(0, Math.min(height - 1, y));
+        }
+
+        private int clampColumn(int x) {
+            return Math.max(0, Math.min(width - 1, x));
+        }
+
+        private void addRow(int y, int shift, int delta) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int value = (pixels[row + x] >> shift) & 0xFF;
+                columnFine[x * BINS + value] += delta;
+                columnCoarse[x * COARSE + (value >> 4)] += delta;
+            }
+        }
+
+        private void filterRow(int y, int shift) {
+            int half = (2 * radius + 1) * (2 * radius + 1) / 2;
+            int window = 2 * radius + 1;
+            Arrays.fill(kernelCoarse, 0);
+            for (int dx = -radius; dx <= radius; dx++) {
+                addCoarse(clampColumn(dx), 1);
+            }
+            // Far enough back that every bin is rebuilt on first use
+            Arrays.fill(fineValidAt, -window);
+            int row = y * width;
+
+            for (int x = 0; x < width; x++) {
+                // Coarse bin holding the median, and how many samples lie below it
+                int bin = 0;
+                int below = 0;
+                while (below + kernelCoarse[bin] <= half) {
+                    below += kernelCoarse[bin];
+                    bin++;
+                }
+
+                // Bring this bin's fine counts from the column they were last valid at to x
+                int last = fineValidAt[bin];
+                int offset = bin * COARSE;
+                if (x - last >= window) {
+                    Arrays.fill(kernelFine, offset, offset + COARSE, 0);
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        addFine(clampColumn(x + dx), offset, 1);
+                    }
+                } else {
+                    for (int step = last + 1; step <= x; step++) {
+                        addFine(clampColumn(step + radius), offset, 1);
+                        addFine(clampColumn(step - radius - 1), offset, -1);
+                    }
+                }
+                fineValidAt[bin] = x;
+
+                int value = offset;
+                while (below + kernelFine[value] <= half) {
+                    below += kernelFine[value];
+                    value++;
+                }
+                out[row + x] = shift == 16 ? 0xFF000000 | (value << 16) : out[row + x] | (value << shift);
+
+                // Slide the coarse window one column right
+                addCoarse(clampColumn(x + radius + 1), 1);
+                addCoarse(clampColumn(x - radius), -1);
+            }
+        }
+
+        private void addCoarse(int x, int delta) {
+            int base = x * COARSE;
+            for (int i = 0; i < COARSE; i++) {
+                kernelCoarse[i] += delta * columnCoarse[base + i];
+            }
+        }
+
+        private void addFine(int x, int offset, int delta) {
+            int base = x * BINS + offset;
+            for (int i = 0; i < COARSE; i++) {
+                kernelFine[offset + i] += delta * columnFine[base + i];
+            }
+        }
+    }
+}
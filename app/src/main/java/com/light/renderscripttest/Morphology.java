@@ -0,0 +1,153 @@
+package com.light.renderscripttest;
+
+import java.util.Arrays;
+
+// Grayscale and binary morphology with a rectangular (2 * radiusX + 1) x (2 * radiusY + 1) structuring element.
+// The element is separable, so each operation is a row pass and a column pass of the 1-D van Herk/Gil-Werman
+// algorithm: about three comparisons per pixel per pass whatever the window size. Inputs are read as gray
+// from the low byte, which is every channel of GrayscaleFilter and SobelFilter output; binary images are
+// gray images holding only 0 and 255, and stay binary. Pixels outside the image never win a comparison.
+public final class Morphology {
+
+    public enum Operation {
+        ERODE,
+        DILATE,
+        OPEN,   // Erode then dilate: removes specks smaller than the element
+        CLOSE   // Dilate then erode: fills gaps smaller than the element
+    }
+
+    // Columns handled together in the vertical pass, so its scratch stays small and row-major
+    private static final int STRIP_WIDTH = 64;
+
+    private Morphology() {
+    }
+
+    public static void apply(Operation operation, int[] pixels, int[] out, int width, int height,
+                             int radiusX, int radiusY, int threads) {
+        int length = width * height;
+        PixelBufferPool pool = PixelBufferPool.shared();
+        int[] plane = pool.acquire(length);
+        int[] temp = pool.acquire(length);
+        try {
+            // Only erosion (a running minimum) is implemented; dilation is erosion of the complement
+            boolean complement = operation == Operation.DILATE || operation == Operation.CLOSE;
+            for (int i = 0; i < length; i++) {
+                int gray = pixels[i] & 0xFF;
+                plane[i] = complement ? 255 - gray : gray;
+            }
+            erode(plane, temp, width, height, radiusX, radiusY, threads);
+            if (operation == Operation.OPEN || operation == Operation.CLOSE) {
+                invert(plane, length);
+                complement = !complement;
+                erode(plane, temp, width, height, radiusX, radiusY, threads);
+            }
+            for (int i = 0; i < length; i++) {
+                int gray = complement ? 255 - plane[i] : plane[i];
+                out[i] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+            }
+        } finally {
+            pool.release(plane);
+            pool.release(temp);
+        }
+    }
+
+    // Binary image from the low byte: 255 where it is at least level, 0 elsewhere. pixels and out may alias.
+    public static void threshold(int[] pixels, int[] out, int length, int level) {
+        for (int i = 0; i < length; i++) {
+            out[i] = (pixels[i] & 0xFF) >= level ? 0xFFFFFFFF : 0xFF000000;
+        }
+    }
+
+    private static void invert(int[] plane, int length) {
+        for (int i = 0; i < length; i++) {
+            plane[i] = 255 - plane[i];
+        }
+    }
+
+    // In place on plane; temp holds the row pass
+    private static void erode(int[] plane, int[] temp, int width, int height, int radiusX, int radiusY, int threads) {
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) ->
+                horizontalPass(plane, temp, width, radiusX, startRow, endRow));
+        int strips = (width + STRIP_WIDTH - 1) / STRIP_WIDTH;
+        ParallelRows.forEachBand(strips, threads, (startStrip, endStrip) ->
+                verticalPass(temp, plane, width, height, radiusY, startStrip, endStrip));
+    }
+
+    // Length of a line padded by radius on both sides and rounded up to whole windows
+    private static int paddedLength(int n, int radius) {
+        int window = 2 * radius + 1;
+        int padded = n + 2 * radius;
+        return (padded + window - 1) / window * window;
+    }
+
+    private static void horizontalPass(int[] in, int[] out, int width, int radius, int startRow, int endRow) {
+        int window = 2 * radius + 1;
+        int padded = paddedLength(width, radius);
+        int[] line = new int[padded];
+        int[] prefix = new int[padded];
+        int[] suffix = new int[padded];
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            Arrays.fill(line, 255);
+            System.arraycopy(in, row, line, radius, width);
+            // Running minimum from the start and from the end of every window-aligned block
+            for (int block = 0; block < padded; block += window) {
+                int end = block + window;
+                prefix[block] = line[block];
+                for (int i = block + 1; i < end; i++) {
+                    prefix[i] = Math.min(prefix[i - 1], line[i]);
+                }
+                suffix[end - 1] = line[end - 1];
+                for (int i = end - 2; i >= block; i--) {
+                    suffix[i] = Math.min(suffix[i + 1], line[i]);
+                }
+            }
+            // The window starting at padded index x spans at most two blocks: the tail of one and the head of the next
+            for (int x = 0; x < width; x++) {
+                out[row + x] = Math.min(suffix[x], prefix[x + window - 1]);
+            }
+        }
+    }
+
+    private static void verticalPass(int[] in, int[] out, int width, int height, int radius,
+                                     int startStrip, int endStrip) {
+        int window = 2 * radius + 1;
+        int padded = paddedLength(height, radius);
+        // Prefix and suffix minima for every column of the strip, row-major
+        int[] prefix = new int[padded * STRIP_WIDTH];
+        int[] suffix = new int[padded * STRIP_WIDTH];
+
+        for (int strip = startStrip; strip < endStrip; strip++) {
+            int x0 = strip * STRIP_WIDTH;
+            int cols = Math.min(STRIP_WIDTH, width - x0);
+            for (int block = 0; block < padded; block += window) {
+                int end = block + window;
+                for (int i = block; i < end; i++) {
+                    int base = i * cols;
+                    int y = i - radius;
+                    boolean inside = y >= 0 && y < height;
+                    for (int c = 0; c < cols; c++) {
+                        int value = inside ? in[y * width + x0 + c] : 255;
+                        prefix[base + c] = i == block ? value : Math.min(prefix[base - cols + c], value);
+                        // Stash the value; the suffix sweep below reads it back
+                        suffix[base + c] = value;
+                    }
+                }
+                for (int i = end - 2; i >= block; i--) {
+                    int base = i * cols;
+                    for (int c = 0; c < cols; c++) {
+                        suffix[base + c] = Math.min(suffix[base + c], suffix[base + cols + c]);
+                    }
+                }
+            }
+            for (int y = 0; y < height; y++) {
+                int top = y * cols;
+                int bottom = (y + window - 1) * cols;
+                int row = y * width + x0;
+                for (int c = 0; c < cols; c++) {
+                    out[row + c] = Math.min(suffix[top + c], prefix[bottom + c]);
+                }
+            }
+        }
+    }
+}
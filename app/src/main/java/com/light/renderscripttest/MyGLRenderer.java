@@ -10,18 +10,27 @@ import javax.microedition.khronos.opengles.GL10;
 
 import android.opengl.GLUtils;
 import android.opengl.Matrix;
+import android.util.Log;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 
 public class MyGLRenderer implements GLSurfaceView.Renderer {
+    private static final String TAG = "MyGLRenderer";
     private Context context;
     private int program, mode;
     private float buffer, aspectRatio;
     private int textureId;
     private Bitmap bitmap;  // The input image
-    private FloatBuffer vertexBuffer, texCoordBuffer;
+    private FloatBuffer vertexBuffer, texCoordBuffer, fboTexCoordBuffer;
+    // Two-pass generated blur (mode 1 with a radius): horizontal into an offscreen texture, then vertical
+    private int blurRadius;
+    private float blurSigma;
+    private int verticalProgram, framebuffer, fboTextureId;
+    private int surfaceWidth, surfaceHeight;
+    // Set when the GL path cannot run on this device; frames are then only cleared
+    private boolean unavailable;
 
     private final float[] vertexData = {
             -1.0f, -1.0f, 0.0f,  // Bottom-left
@@ -37,6 +46,14 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
             1.0f, 0.0f   // Top-right
     };
 
+    // The offscreen pass already flipped the image, so reading it back needs unflipped coordinates
+    private final float[] fboTexCoordData = {
+            0.0f, 0.0f,  // Bottom-left
+            1.0f, 0.0f,  // Bottom-right
+            0.0f, 1.0f,  // Top-left
+            1.0f, 1.0f   // Top-right
+    };
+
     public MyGLRenderer(Context context, Bitmap bitmap, int mode, float aspectRatio) {
         this.context = context;
         this.bitmap = bitmap;
@@ -50,6 +67,15 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
         this.buffer = buffer;
         this.aspectRatio = aspectRatio;
     }
+    // Gaussian blur with shaders generated for this radius and sigma, matching GaussianBlur's kernel
+    public MyGLRenderer(Context context, Bitmap bitmap, int mode, int blurRadius, float blurSigma, float aspectRatio) {
+        this.context = context;
+        this.bitmap = bitmap;
+        this.mode = mode;
+        this.blurRadius = blurRadius;
+        this.blurSigma = blurSigma;
+        this.aspectRatio = aspectRatio;
+    }
 
     private void setupBuffers() {
         ByteBuffer vb = ByteBuffer.allocateDirect(vertexData.length * 4);
@@ -63,11 +89,18 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
         texCoordBuffer = tb.asFloatBuffer();
         texCoordBuffer.put(texCoordData);
         texCoordBuffer.position(0);
+
+        ByteBuffer fb = ByteBuffer.allocateDirect(fboTexCoordData.length * 4);
+        fb.order(ByteOrder.nativeOrder());
+        fboTexCoordBuffer = fb.asFloatBuffer();
+        fboTexCoordBuffer.put(fboTexCoordData);
+        fboTexCoordBuffer.position(0);
     }
 
     @Override
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
         setupBuffers();
+        fitToTextureLimit();
         String vertexShaderCode = ShaderUtils.loadShaderFromResource(context, R.raw.vertex_shader);
         String fragmentShaderCode;
         switch (mode) {
@@ -75,7 +108,9 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
                 fragmentShaderCode = ShaderUtils.loadShaderFromResource(context, R.raw.grayscale); // Grayscale shader
                 break;
             case 1:
-                fragmentShaderCode = ShaderUtils.loadShaderFromResource(context, R.raw.blur); // Blur shader
+                fragmentShaderCode = blurRadius > 0
+                        ? BlurShaderGenerator.fragmentShader(blurRadius, blurSigma, true)
+                        : ShaderUtils.loadShaderFromResource(context, R.raw.blur); // Blur shader
                 break;
             case 2:
                 fragmentShaderCode = ShaderUtils.loadShaderFromResource(context, R.raw.sobel); // Edge shader
@@ -85,21 +120,55 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
                 break;
         }
         int vertexShader = compileShader(GLES32.GL_VERTEX_SHADER, vertexShaderCode);
-        int fragmentShader = compileShader(GLES32.GL_FRAGMENT_SHADER, fragmentShaderCode);
-
-        program = GLES32.glCreateProgram();
-        GLES32.glAttachShader(program, vertexShader);
-        GLES32.glAttachShader(program, fragmentShader);
-        GLES32.glLinkProgram(program);
+        program = linkProgram(vertexShader, compileShader(GLES32.GL_FRAGMENT_SHADER, fragmentShaderCode));
 
         GLES32.glUseProgram(program);
 
         // Load the bitmap as a texture
         textureId = loadTexture(bitmap);
+
+        if (isTwoPassBlur()) {
+            String verticalCode = BlurShaderGenerator.fragmentShader(blurRadius, blurSigma, false);
+            verticalProgram = linkProgram(vertexShader, compileShader(GLES32.GL_FRAGMENT_SHADER, verticalCode));
+            if (!createFramebuffer(bitmap.getWidth(), bitmap.getHeight())) {
+                unavailable = true;
+            }
+        }
+    }
+
+    // Textures (and the blur's offscreen target) cannot exceed GL_MAX_TEXTURE_SIZE, so larger inputs such as
+    // the 7680x4320 synthetic preset are scaled down to fit, keeping the aspect ratio
+    private void fitToTextureLimit() {
+        int[] limit = new int[1];
+        GLES32.glGetIntegerv(GLES32.GL_MAX_TEXTURE_SIZE, limit, 0);
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (limit[0] <= 0 || (width <= limit[0] && height <= limit[0])) {
+            return;
+        }
+        float scale = (float) limit[0] / Math.max(width, height);
+        int targetWidth = Math.max(1, Math.min(limit[0], Math.round(width * scale)));
+        int targetHeight = Math.max(1, Math.min(limit[0], Math.round(height * scale)));
+        Log.w(TAG, width + "x" + height + " exceeds GL_MAX_TEXTURE_SIZE " + limit[0]
+                + ", rendering at " + targetWidth + "x" + targetHeight);
+        // The activity still owns the original bitmap
+        bitmap = ResizeEngine.resize(bitmap, targetWidth, targetHeight, ResizeEngine.Kernel.BILINEAR, ParallelRows.CORES);
+    }
+
+    private boolean isTwoPassBlur() {
+        return mode == 1 && blurRadius > 0;
     }
 
     @Override
     public void onDrawFrame(GL10 gl) {
+        if (unavailable) {
+            GLES32.glClear(GLES32.GL_COLOR_BUFFER_BIT | GLES32.GL_DEPTH_BUFFER_BIT);
+            return;
+        }
+        if (isTwoPassBlur()) {
+            drawTwoPassBlur();
+            return;
+        }
         GLES32.glClear(GLES32.GL_COLOR_BUFFER_BIT | GLES32.GL_DEPTH_BUFFER_BIT);
 
         GLES32.glUseProgram(program);
@@ -125,9 +194,37 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
         GLES32.glDrawArrays(GLES32.GL_TRIANGLE_STRIP, 0, 4);
     }
 
+    // Horizontal pass from the bitmap into the offscreen texture at full resolution, then vertical pass to the screen
+    private void drawTwoPassBlur() {
+        GLES32.glBindFramebuffer(GLES32.GL_FRAMEBUFFER, framebuffer);
+        GLES32.glViewport(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        drawQuad(program, textureId, texCoordBuffer);
+
+        GLES32.glBindFramebuffer(GLES32.GL_FRAMEBUFFER, 0);
+        GLES32.glViewport(0, 0, surfaceWidth, surfaceHeight);
+        GLES32.glClear(GLES32.GL_COLOR_BUFFER_BIT | GLES32.GL_DEPTH_BUFFER_BIT);
+        drawQuad(verticalProgram, fboTextureId, fboTexCoordBuffer);
+    }
+
+    private void drawQuad(int quadProgram, int texture, FloatBuffer texCoords) {
+        GLES32.glUseProgram(quadProgram);
+        GLES32.glActiveTexture(GLES32.GL_TEXTURE0);
+        GLES32.glBindTexture(GLES32.GL_TEXTURE_2D, texture);
+        GLES32.glUniform1i(GLES32.glGetUniformLocation(quadProgram, "uTexture"), 0);
+
+        GLES32.glEnableVertexAttribArray(0);
+        GLES32.glVertexAttribPointer(0, 3, GLES32.GL_FLOAT, false, 0, vertexBuffer);
+        GLES32.glEnableVertexAttribArray(1);
+        GLES32.glVertexAttribPointer(1, 2, GLES32.GL_FLOAT, false, 0, texCoords);
+
+        GLES32.glDrawArrays(GLES32.GL_TRIANGLE_STRIP, 0, 4);
+    }
+
     @Override
     public void onSurfaceChanged(GL10 gl, int width, int height) {
         GLES32.glViewport(0, 0, width, height);  // Set the OpenGL viewport
+        surfaceWidth = width;
+        surfaceHeight = height;
 
         // Calculate aspect ratio
         float ratio = (float) width / height;
@@ -158,6 +255,49 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
         return shader;
     }
 
+    private int linkProgram(int vertexShader, int fragmentShader) {
+        int linked = GLES32.glCreateProgram();
+        GLES32.glAttachShader(linked, vertexShader);
+        GLES32.glAttachShader(linked, fragmentShader);
+        // Both programs share the vertex arrays, so pin the attributes to the locations they are drawn with
+        GLES32.glBindAttribLocation(linked, 0, "a_Position");
+        GLES32.glBindAttribLocation(linked, 1, "a_TexCoord");
+        GLES32.glLinkProgram(linked);
+        return linked;
+    }
+
+    // Offscreen RGBA8 target for the horizontal pass; linear filtering so the vertical pass can merge taps too.
+    // Returns false, after releasing what it created, when the driver cannot build it
+    private boolean createFramebuffer(int width, int height) {
+        int[] handle = new int[1];
+        GLES32.glGenTextures(1, handle, 0);
+        fboTextureId = handle[0];
+        GLES32.glBindTexture(GLES32.GL_TEXTURE_2D, fboTextureId);
+        GLES32.glTexParameteri(GLES32.GL_TEXTURE_2D, GLES32.GL_TEXTURE_MIN_FILTER, GLES32.GL_LINEAR);
+        GLES32.glTexParameteri(GLES32.GL_TEXTURE_2D, GLES32.GL_TEXTURE_MAG_FILTER, GLES32.GL_LINEAR);
+        GLES32.glTexParameteri(GLES32.GL_TEXTURE_2D, GLES32.GL_TEXTURE_WRAP_S, GLES32.GL_CLAMP_TO_EDGE);
+        GLES32.glTexParameteri(GLES32.GL_TEXTURE_2D, GLES32.GL_TEXTURE_WRAP_T, GLES32.GL_CLAMP_TO_EDGE);
+        GLES32.glTexImage2D(GLES32.GL_TEXTURE_2D, 0, GLES32.GL_RGBA8, width, height, 0,
+                GLES32.GL_RGBA, GLES32.GL_UNSIGNED_BYTE, null);
+
+        GLES32.glGenFramebuffers(1, handle, 0);
+        framebuffer = handle[0];
+        GLES32.glBindFramebuffer(GLES32.GL_FRAMEBUFFER, framebuffer);
+        GLES32.glFramebufferTexture2D(GLES32.GL_FRAMEBUFFER, GLES32.GL_COLOR_ATTACHMENT0,
+                GLES32.GL_TEXTURE_2D, fboTextureId, 0);
+        int status = GLES32.glCheckFramebufferStatus(GLES32.GL_FRAMEBUFFER);
+        GLES32.glBindFramebuffer(GLES32.GL_FRAMEBUFFER, 0);
+        GLES32.glBindTexture(GLES32.GL_TEXTURE_2D, 0);
+        if (status != GLES32.GL_FRAMEBUFFER_COMPLETE) {
+            Log.e(TAG, "Blur framebuffer " + width + "x" + height + " incomplete: 0x" + Integer.toHexString(status)
+                    + ", skipping the GL blur");
+            GLES32.glDeleteFramebuffers(1, new int[]{framebuffer}, 0);
+            GLES32.glDeleteTextures(1, new int[]{fboTextureId}, 0);
+            return false;
+        }
+        return true;
+    }
+
     private int loadTexture(Bitmap bitmap) {
         int[] textureHandle = new int[1];
         GLES32.glGenTextures(1, textureHandle, 0);
@@ -0,0 +1,101 @@
+package com.light.renderscripttest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Splits a row range into horizontal bands and runs them on a shared worker pool
+public final class ParallelRows {
+
+    public interface BandTask {
+        void run(int startRow, int endRow);
+    }
+
+    public static final int CORES = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadLocal<Boolean> IS_WORKER = new ThreadLocal<>();
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(CORES, new ThreadFactory() {
+        private int count;
+
+        @Override
+        public synchronized Thread newThread(Runnable r) {
+            Thread thread = new Thread(() -> {
+                IS_WORKER.set(Boolean.TRUE);
+                r.run();
+            }, "parallel-rows-" + count++);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private ParallelRows() {
+    }
+
+    // Runs task over [0, rows) using up to `threads` bands. The calling thread takes the first band.
+    public static void forEachBand(int rows, int threads, BandTask task) {
+        int bands = Math.max(1, Math.min(threads, rows));
+        // Nested calls from a worker run inline so a saturated pool cannot deadlock on itself
+        if (bands == 1 || Boolean.TRUE.equals(IS_WORKER.get())) {
+            task.run(0, rows);
+            return;
+        }
+
+        int bandHeight = (rows + bands - 1) / bands;
+        // Callers release pooled buffers once this returns, so it only returns (or throws) after every band
+        // has stopped. After a failure or interrupt, bands that have not started yet are skipped
+        AtomicBoolean aborted = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch pending = new CountDownLatch((rows - 1) / bandHeight);
+        for (int start = bandHeight; start < rows; start += bandHeight) {
+            final int s = start;
+            final int e = Math.min(rows, start + bandHeight);
+            POOL.execute(() -> {
+                try {
+                    if (!aborted.get()) {
+                        task.run(s, e);
+                    }
+                } catch (Throwable t) {
+                    aborted.set(true);
+                    failure.compareAndSet(null, t);
+                } finally {
+                    pending.countDown();
+                }
+            });
+        }
+        try {
+            task.run(0, Math.min(rows, bandHeight));
+        } catch (Throwable t) {
+            aborted.set(true);
+            failure.compareAndSet(null, t);
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                pending.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                aborted.set(true);
+                failure.compareAndSet(null, e);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable cause = failure.get();
+        if (cause instanceof InterruptedException) {
+            throw new IllegalStateException("Interrupted while waiting for row bands", cause);
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else if (cause != null) {
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.light.renderscripttest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Runs every combination of size, radius, sigma, algorithm and thread count through the benchmark harness
+public class ParameterSweep {
+
+    public interface InputSource {
+        // ARGB_8888 pixels of the requested size
+        int[] load(int width, int height);
+
+        // Called once the sweep is done with a buffer returned by load()
+        default void release(int[] pixels) {
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(int done, int total, Row row);
+    }
+
+    public static class Config {
+        // {width, height} pairs
+        public int[][] sizes = {{256, 256}, {640, 480}, {1024, 1024}, {1920, 1080}};
+        public int[] radii = {5, 10, 15, 25};
+        // A sigma <= 0 means radius / 3, which keeps the kernel tails at ~1% like the BlurActivity presets
+        public float[] sigmas = {0f};
+        public BlurAlgorithm[] algorithms = BlurAlgorithm.values();
+        public int[] threads = defaultThreads();
+        public int warmupRuns = 1;
+        public int measuredRuns = 3;
+        // Every speedup is measured against this configuration; cells that did not run it print n/a
+        public BlurAlgorithm baselineAlgorithm = BlurAlgorithm.GAUSSIAN_EXACT;
+        public int baselineThreads = 1;
+
+        String baselineLabel() {
+            return configLabel(baselineAlgorithm, baselineThreads);
+        }
+
+        private static int[] defaultThreads() {
+            if (ParallelRows.CORES <= 2) {
+                return ParallelRows.CORES == 1 ? new int[]{1} : new int[]{1, 2};
+            }
+            if (ParallelRows.CORES <= 4) {
+                return new int[]{1, 2, ParallelRows.CORES};
+            }
+            return new int[]{1, 2, 4, ParallelRows.CORES};
+        }
+    }
+
+    public static class Row {
+        public final int width, height, radius;
+        public final float sigma;
+        public final BlurAlgorithm algorithm;
+        public final int threads;
+        public final BenchmarkHarness.Result result;
+
+        Row(int width, int height, int radius, float sigma, BlurAlgorithm algorithm, int threads,
+            BenchmarkHarness.Result result) {
+            this.width = width;
+            this.height = height;
+            this.radius = radius;
+            this.sigma = sigma;
+            this.algorithm = algorithm;
+            this.threads = threads;
+            this.result = result;
+        }
+
+        // The exact sigma, so sigmas that would round to the same digit stay in separate cells
+        String cellKey() {
+            return String.format(Locale.US, "%dx%d r=%d s=", width, height, radius) + sigma;
+        }
+
+        String configLabel() {
+            return ParameterSweep.configLabel(algorithm, threads);
+        }
+    }
+
+    static String configLabel(BlurAlgorithm algorithm, int threads) {
+        return algorithm.threaded ? algorithm.label + " x" + threads : algorithm.label;
+    }
+
+    private final Config config;
+    private final InputSource source;
+    private final RenderScriptBlur rsBlur;
+    private final List<Row> rows = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    // rsBlur may be null, in which case RENDERSCRIPT entries are skipped
+    public ParameterSweep(Config config, InputSource source, RenderScriptBlur rsBlur) {
+        this.config = config;
+        this.source = source;
+        this.rsBlur = rsBlur;
+    }
+
+    public List<Row> run(ProgressListener listener) {
+        rows.clear();
+        BenchmarkHarness harness = new BenchmarkHarness(config.warmupRuns, config.measuredRuns);
+        int total = countRuns();
+
+        for (int[] size : config.sizes) {
+            int width = size[0];
+            int height = size[1];
+            int[] pixels = source.load(width, height);
+            int[] out = PixelBufferPool.shared().acquire(width * height);
+            try {
+                runSize(harness, pixels, out, width, height, listener, total);
+            } finally {
+                source.release(pixels);
+                PixelBufferPool.shared().release(out);
+            }
+            if (cancelled) {
+                break;
+            }
+        }
+        return rows;
+    }
+
+    private void runSize(BenchmarkHarness harness, int[] pixels, int[] out, int width, int height,
+                         ProgressListener listener, int total) {
+        for (int radius : config.radii) {
+            for (float requestedSigma : config.sigmas) {
+                float sigma = requestedSigma > 0 ? requestedSigma : radius / 3f;
+
+                for (BlurAlgorithm algorithm : config.algorithms) {
+                    if (!algorithm.supports(radius, rsBlur)) {
+                        continue;
+                    }
+                    BlurEngine engine = algorithm.createEngine(rsBlur);
+                    int[] threadCounts = algorithm.threaded ? config.threads : new int[]{1};
+                    for (int threads : threadCounts) {
+                        if (cancelled) {
+                            return;
+                        }
+                        Runnable task = () -> engine.blur(pixels, out, width, height, radius, sigma, threads);
+                        Row row = new Row(width, height, radius, sigma, algorithm, threads, harness.measure(task));
+                        rows.add(row);
+                        if (listener != null) {
+                            listener.onProgress(rows.size(), total, row);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Stops the sweep before its next measurement; rows measured so far are kept
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private int countRuns() {
+        int cells = config.sizes.length * config.sigmas.length;
+        int total = 0;
+        for (int radius : config.radii) {
+            int perCell = 0;
+            for (BlurAlgorithm algorithm : config.algorithms) {
+                if (algorithm.supports(radius, rsBlur)) {
+                    perCell += algorithm.threaded ? config.threads.length : 1;
+                }
+            }
+            total += perCell * cells;
+        }
+        return total;
+    }
+
+    public String baselineLabel() {
+        return config.baselineLabel();
+    }
+
+    // One line per (size, radius, sigma) cell, one column per algorithm/thread configuration (median μs)
+    // and its speedup over the baseline configuration
+    public String scalingTable() {
+        Map<String, Map<String, Row>> cells = groupByCell();
+        List<String> columns = new ArrayList<>();
+        for (Row row : rows) {
+            if (!columns.contains(row.configLabel())) {
+                columns.add(row.configLabel());
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-30s", "cell"));
+        for (String column : columns) {
+            sb.append(String.format(Locale.US, " | %16s", column));
+        }
+        sb.append('\n');
+
+        for (Map.Entry<String, Map<String, Row>> cell : cells.entrySet()) {
+            sb.append(String.format(Locale.US, "%-30s", cell.getKey()));
+            Row baseline = cell.getValue().get(config.baselineLabel());
+            for (String column : columns) {
+                Row row = cell.getValue().get(column);
+                if (row == null) {
+                    sb.append(String.format(Locale.US, " | %16s", "-"));
+                } else if (baseline == null) {
+                    sb.append(String.format(Locale.US, " | %9d %6s", row.result.medianUs, "n/a"));
+                } else {
+                    double speedup = (double) baseline.result.medianUs / Math.max(1, row.result.medianUs);
+                    sb.append(String.format(Locale.US, " | %9d %5.2fx", row.result.medianUs, speedup));
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // Fastest configuration for each (size, radius, sigma) cell and its speedup over the baseline configuration
+    public String bestConfigSummary() {
+        StringBuilder sb = new StringBuilder();
+        String baselineLabel = config.baselineLabel();
+        for (Map.Entry<String, Map<String, Row>> cell : groupByCell().entrySet()) {
+            Row baseline = cell.getValue().get(baselineLabel);
+            Row best = null;
+            for (Row row : cell.getValue().values()) {
+                if (best == null || row.result.medianUs < best.result.medianUs) {
+                    best = row;
+                }
+            }
+            String speedup = baseline == null ? "n/a"
+                    : String.format(Locale.US, "%.2fx", (double) baseline.result.medianUs / Math.max(1, best.result.medianUs));
+            sb.append(String.format(Locale.US, "%-30s -> %-18s %9d μs (%s vs %s)%n",
+                    cell.getKey(), best.configLabel(), best.result.medianUs, speedup, baselineLabel));
+        }
+        return sb.toString();
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    private Map<String, Map<String, Row>> groupByCell() {
+        Map<String, Map<String, Row>> cells = new LinkedHashMap<>();
+        for (Row row : rows) {
+            Map<String, Row> cell = cells.get(row.cellKey());
+            if (cell == null) {
+                cell = new LinkedHashMap<>();
+                cells.put(row.cellKey(), cell);
+            }
+            cell.put(row.configLabel(), row);
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,97 @@
+package com.light.renderscripttest;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+// Recycles int[] pixel buffers, and float[] work buffers, by length so large frames are not reallocated per run
+public class PixelBufferPool {
+
+    // Until the application sets a budget from the device's heap size
+    private static final PixelBufferPool SHARED = new PixelBufferPool(64L * 1024 * 1024);
+
+    private final Map<Integer, ArrayDeque<int[]>> free = new HashMap<>();
+    private final Map<Integer, ArrayDeque<float[]>> freeFloats = new HashMap<>();
+    private long maxPooledBytes;
+    private long pooledBytes;
+
+    public PixelBufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    public static PixelBufferPool shared() {
+        return SHARED;
+    }
+
+    // Contents of a recycled buffer are undefined; callers must overwrite every element they read
+    public synchronized int[] acquire(int length) {
+        ArrayDeque<int[]> buffers = free.get(length);
+        if (buffers != null && !buffers.isEmpty()) {
+            pooledBytes -= 4L * length;
+            return buffers.pop();
+        }
+        return new int[length];
+    }
+
+    public synchronized void release(int[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        long bytes = 4L * buffer.length;
+        if (pooledBytes + bytes > maxPooledBytes) {
+            return;  // Let the GC have it rather than grow past the budget
+        }
+        ArrayDeque<int[]> buffers = free.get(buffer.length);
+        if (buffers == null) {
+            buffers = new ArrayDeque<>();
+            free.put(buffer.length, buffers);
+        }
+        buffers.push(buffer);
+        pooledBytes += bytes;
+    }
+
+    // Same contract as acquire(int); the budget is shared with the int buffers
+    public synchronized float[] acquireFloats(int length) {
+        ArrayDeque<float[]> buffers = freeFloats.get(length);
+        if (buffers != null && !buffers.isEmpty()) {
+            pooledBytes -= 4L * length;
+            return buffers.pop();
+        }
+        return new float[length];
+    }
+
+    public synchronized void release(float[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        long bytes = 4L * buffer.length;
+        if (pooledBytes + bytes > maxPooledBytes) {
+            return;
+        }
+        ArrayDeque<float[]> buffers = freeFloats.get(buffer.length);
+        if (buffers == null) {
+            buffers = new ArrayDeque<>();
+            freeFloats.put(buffer.length, buffers);
+        }
+        buffers.push(buffer);
+        pooledBytes += bytes;
+    }
+
+    // Lowering the budget drops what no longer fits
+    public synchronized void setMaxPooledBytes(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        if (pooledBytes > maxPooledBytes) {
+            clear();
+        }
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    public synchronized void clear() {
+        free.clear();
+        freeFloats.clear();
+        pooledBytes = 0;
+    }
+}
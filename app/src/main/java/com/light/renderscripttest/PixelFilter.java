@@ -0,0 +1,7 @@
+package com.light.renderscripttest;
+
+// A whole-image filter over ARGB_8888 pixels, used as a stage by the batch and stream pipelines.
+// out must not alias pixels unless the implementation says otherwise.
+public interface PixelFilter {
+    void apply(int[] pixels, int[] out, int width, int height);
+}
@@ -0,0 +1,135 @@
+package com.light.renderscripttest;
+
+import android.graphics.Rect;
+
+import java.util.List;
+
+// The Java kernels of the benchmark screens as PixelFilter stages
+public final class PixelFilters {
+
+    public enum Op {
+        GRAYSCALE,
+        BLUR,
+        SOBEL,
+        MEDIAN,
+        SHARPEN,
+        BILATERAL,
+        // Morphology with a square element of the given radius
+        ERODE,
+        DILATE,
+        OPEN,
+        CLOSE
+    }
+
+    private PixelFilters() {
+    }
+
+    public static PixelFilter grayscale() {
+        return (pixels, out, width, height) -> GrayscaleFilter.apply(pixels, out, width * height);
+    }
+
+    // threads is the row-band parallelism inside one image
+    public static RegionFilter blur(int radius, float sigma, int threads) {
+        GaussianBlur gaussianBlur = new GaussianBlur(radius, sigma);
+        return new RegionFilter() {
+            @Override
+            public void apply(int[] pixels, int[] out, int width, int height) {
+                gaussianBlur.blur(pixels, out, width, height, threads);
+            }
+
+            @Override
+            public List<Rect> applyRegions(int[] pixels, int[] out, int width, int height, List<Rect> dirty) {
+                return gaussianBlur.blurRegions(pixels, out, width, height, dirty, threads);
+            }
+        };
+    }
+
+    public static PixelFilter sharpen(int radius, float sigma, float amount, int threshold, int threads) {
+        GaussianBlur gaussianBlur = new GaussianBlur(radius, sigma);
+        return (pixels, out, width, height) ->
+                gaussianBlur.sharpen(pixels, out, width, height, amount, threshold, threads);
+    }
+
+    // Edge-preserving smoothing; sigmaRange is in 8-bit luma levels
+    public static PixelFilter bilateral(float sigmaSpatial, float sigmaRange, int threads) {
+        return (pixels, out, width, height) ->
+                BilateralGrid.apply(pixels, out, width, height, sigmaSpatial, sigmaRange, threads);
+    }
+
+    public static RegionFilter sobel() {
+        return new RegionFilter() {
+            @Override
+            public void apply(int[] pixels, int[] out, int width, int height) {
+                // SobelFilter leaves the border untouched, and pooled buffers are not zeroed
+                clearBorder(out, width, height);
+                SobelFilter.apply(pixels, out, width, height);
+            }
+
+            @Override
+            public List<Rect> applyRegions(int[] pixels, int[] out, int width, int height, List<Rect> dirty) {
+                return SobelFilter.applyRegions(pixels, out, width, height, dirty);
+            }
+        };
+    }
+
+    public static PixelFilter median(int radius, int threads) {
+        return (pixels, out, width, height) -> MedianFilter.apply(pixels, out, width, height, radius, threads);
+    }
+
+    // Runs first, then second on its output, through a pooled intermediate buffer
+    public static PixelFilter chain(PixelFilter first, PixelFilter second) {
+        return (pixels, out, width, height) -> {
+            int[] temp = PixelBufferPool.shared().acquire(width * height);
+            try {
+                first.apply(pixels, temp, width, height);
+                second.apply(temp, out, width, height);
+            } finally {
+                PixelBufferPool.shared().release(temp);
+            }
+        };
+    }
+
+    public static PixelFilter morphology(Morphology.Operation operation, int radiusX, int radiusY, int threads) {
+        return (pixels, out, width, height) ->
+                Morphology.apply(operation, pixels, out, width, height, radiusX, radiusY, threads);
+    }
+
+    public static PixelFilter create(Op op, int radius, float sigma, int threads) {
+        return create(op, radius, sigma, BilateralGrid.DEFAULT_SIGMA_SPATIAL, threads);
+    }
+
+    // sigma is the blur's; BILATERAL takes its own spatial sigma, as the grid only pays off at large ones
+    public static PixelFilter create(Op op, int radius, float sigma, float bilateralSigma, int threads) {
+        switch (op) {
+            case BLUR:
+                return blur(radius, sigma, threads);
+            case SOBEL:
+                return sobel();
+            case MEDIAN:
+                return median(radius, threads);
+            case SHARPEN:
+                return sharpen(radius, sigma, 1f, 0, threads);
+            case BILATERAL:
+                return bilateral(bilateralSigma, BilateralGrid.DEFAULT_SIGMA_RANGE, threads);
+            case ERODE:
+            case DILATE:
+            case OPEN:
+            case CLOSE:
+                return morphology(Morphology.Operation.valueOf(op.name()), radius, radius, threads);
+            case GRAYSCALE:
+            default:
+                return grayscale();
+        }
+    }
+
+    private static void clearBorder(int[] out, int width, int height) {
+        for (int x = 0; x < width; x++) {
+            out[x] = 0;
+            out[(height - 1) * width + x] = 0;
+        }
+        for (int y = 0; y < height; y++) {
+            out[y * width] = 0;
+            out[y * width + width - 1] = 0;
+        }
+    }
+}
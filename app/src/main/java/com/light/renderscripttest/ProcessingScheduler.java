@@ -0,0 +1,208 @@
+package com.light.renderscripttest;
+
+import android.content.Context;
+
+import androidx.renderscript.RenderScript;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// App-wide scheduler for image processing requests, shared by every screen.
+// - One worker per core; queued work runs in lane order, FIFO within a lane.
+// - Submitting under a tag cancels the previous request with that tag (latest wins).
+// - At most `capacity` requests wait in the queue. A full queue evicts its lowest-priority waiting
+//   request if that is below the new one, otherwise submit() throws RejectedExecutionException and
+//   submitBlocking() waits for room.
+// - RenderScript and other backend objects are created once and reused across requests and screens.
+// Data-parallel kernels still fan out over ParallelRows, so a request may use more than one core.
+public final class ProcessingScheduler {
+
+    public enum Lane {
+        INTERACTIVE,  // Results the user is looking at right now
+        NORMAL,
+        BATCH         // Sweeps and profiling; never mandatory cleanup, which a full queue can reject
+    }
+
+    public interface BackendFactory<T> {
+        T create(RenderScript rs);
+    }
+
+    private static final int DEFAULT_CAPACITY = 4 * ParallelRows.CORES;
+    private static ProcessingScheduler instance;
+
+    private final ThreadPoolExecutor executor;
+    private final int capacity;
+    private final Map<String, Task> latest = new HashMap<>();
+    private final Map<Class<?>, Object> backends = new HashMap<>();
+    private RenderScript rs;
+    private int queued;
+    private long sequence;
+
+    public static synchronized ProcessingScheduler getInstance() {
+        if (instance == null) {
+            instance = new ProcessingScheduler(ParallelRows.CORES, DEFAULT_CAPACITY);
+        }
+        return instance;
+    }
+
+    ProcessingScheduler(int threads, int capacity) {
+        this.capacity = capacity;
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "processing-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // Idle workers exit, so leaving every screen costs no threads
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // tag may be null for work that should never replace or be replaced by other requests
+    public Future<?> submit(String tag, Lane lane, Runnable work) {
+        return enqueue(tag, lane, work, false);
+    }
+
+    // Like submit(), but waits for queue space instead of rejecting; for producers such as batch jobs
+    public Future<?> submitBlocking(String tag, Lane lane, Runnable work) {
+        return enqueue(tag, lane, work, true);
+    }
+
+    // Cancels the latest request with this tag, interrupting it if it already started
+    public synchronized void cancel(String tag) {
+        Task task = latest.remove(tag);
+        if (task != null) {
+            task.cancel(true);
+        }
+    }
+
+    public synchronized int getQueuedCount() {
+        return queued;
+    }
+
+    // Shared RenderScript context; it lives as long as the process so screens never pay for it twice
+    public synchronized RenderScript getRenderScript(Context context) {
+        if (rs == null) {
+            rs = RenderScript.create(context.getApplicationContext());
+        }
+        return rs;
+    }
+
+    // One instance per type, built on the shared RenderScript context (scripts, intrinsics, wrappers)
+    public synchronized <T> T backend(Context context, Class<T> type, BackendFactory<T> factory) {
+        Object backend = backends.get(type);
+        if (backend == null) {
+            backend = factory.create(getRenderScript(context));
+            backends.put(type, backend);
+        }
+        return type.cast(backend);
+    }
+
+    private synchronized Future<?> enqueue(String tag, Lane lane, Runnable work, boolean blocking) {
+        if (tag != null) {
+            Task previous = latest.remove(tag);
+            if (previous != null) {
+                previous.cancel(true);
+            }
+        }
+
+        while (queued >= capacity) {
+            if (blocking) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for queue space", e);
+                }
+                continue;
+            }
+            Task victim = lowestPriorityQueued();
+            if (victim == null || victim.lane.ordinal() <= lane.ordinal()) {
+                throw new RejectedExecutionException("Processing queue full (" + capacity + " waiting)");
+            }
+            victim.cancel(false);
+        }
+
+        Task task = new Task(tag, lane, sequence++, work);
+        queued++;
+        if (tag != null) {
+            latest.put(tag, task);
+        }
+        executor.execute(task);
+        return task;
+    }
+
+    private Task lowestPriorityQueued() {
+        Task lowest = null;
+        for (Runnable runnable : executor.getQueue()) {
+            Task task = (Task) runnable;
+            if (!task.isDone() && (lowest == null || task.compareTo(lowest) > 0)) {
+                lowest = task;
+            }
+        }
+        return lowest;
+    }
+
+    // Called once per task, when it starts or when it is cancelled before starting
+    private synchronized void leaveQueue(Task task) {
+        if (task.waiting) {
+            task.waiting = false;
+            queued--;
+            notifyAll();
+        }
+    }
+
+    private synchronized void finished(Task task) {
+        if (task.tag != null && latest.get(task.tag) == task) {
+            latest.remove(task.tag);
+        }
+    }
+
+    private final class Task extends FutureTask<Void> implements Comparable<Task> {
+        final String tag;
+        final Lane lane;
+        final long order;
+        boolean waiting = true;  // Guarded by the scheduler
+
+        Task(String tag, Lane lane, long order, Runnable work) {
+            super(work, null);
+            this.tag = tag;
+            this.lane = lane;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            leaveQueue(this);
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                leaveQueue(this);
+                executor.remove(this);
+            }
+            finished(this);
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (lane != other.lane) {
+                return lane.ordinal() - other.lane.ordinal();
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.light.renderscripttest;
+
+// Large-sigma blur on a reduced image: halve the resolution until the remaining sigma is small,
+// run the exact Gaussian there, then upsample bilinearly. Cost falls by ~4x per level.
+public class PyramidBlur implements BlurEngine {
+
+    // Stop reducing once the sigma left at the coarse level is below this
+    private static final float MIN_LEVEL_SIGMA = 2.0f;
+    private static final int MAX_LEVELS = 4;
+
+    @Override
+    public void blur(int[] pixels, int[] out, int width, int height, int radius, float sigma, int threads) {
+        int levels = levelsFor(sigma, width, height);
+        if (levels == 0) {
+            new GaussianBlur(radius, sigma).blur(pixels, out, width, height, threads);
+            return;
+        }
+
+        PixelBufferPool pool = PixelBufferPool.shared();
+        int[] level = pixels;
+        int w = width;
+        int h = height;
+        for (int i = 0; i < levels; i++) {
+            int nw = (w + 1) / 2;
+            int nh = (h + 1) / 2;
+            int[] reduced = pool.acquire(nw * nh);
+            ResizeEngine.halve(level, w, h, reduced, threads);
+            if (level != pixels) {
+                pool.release(level);
+            }
+            level = reduced;
+            w = nw;
+            h = nh;
+        }
+
+        int scale = 1 << levels;
+        int levelRadius = Math.max(1, (radius + scale - 1) / scale);
+        float levelSigma = sigma / scale;
+        int[] blurred = pool.acquire(w * h);
+        new GaussianBlur(levelRadius, levelSigma).blur(level, blurred, w, h, threads);
+        pool.release(level);
+
+        ResizeEngine.resize(blurred, w, h, out, width, height, ResizeEngine.Kernel.BILINEAR, threads);
+        pool.release(blurred);
+    }
+
+    static int levelsFor(float sigma, int width, int height) {
+        int levels = 0;
+        float s = sigma;
+        while (levels < MAX_LEVELS && s / 2 >= MIN_LEVEL_SIGMA && (width >> (levels + 1)) >= 8 && (height >> (levels + 1)) >= 8) {
+            s /= 2;
+            levels++;
+        }
+        return levels;
+    }
+}
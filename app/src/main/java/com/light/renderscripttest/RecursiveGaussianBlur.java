@@ -0,0 +1,151 @@
+package com.light.renderscripttest;
+
+// Third-order recursive (IIR) Gaussian after Young & van Vliet, "Recursive implementation of the
+// Gaussian filter" (1995). A causal and an anti-causal pass per axis give a cost per pixel that is
+// independent of sigma; the radius argument is ignored. Valid for sigma >= 0.5.
+public class RecursiveGaussianBlur implements BlurEngine {
+
+    // Columns handled together in the vertical pass, so its scratch stays small and row-major
+    private static final int STRIP_WIDTH = 64;
+
+    @Override
+    public void blur(int[] pixels, int[] out, int width, int height, int radius, float sigma, int threads) {
+        float[] c = coefficients(Math.max(0.5f, sigma));
+        int[] temp = PixelBufferPool.shared().acquire(width * height);
+        try {
+            ParallelRows.forEachBand(height, threads, (startRow, endRow) ->
+                    horizontalPass(pixels, temp, width, c, startRow, endRow));
+            int strips = (width + STRIP_WIDTH - 1) / STRIP_WIDTH;
+            ParallelRows.forEachBand(strips, threads, (startStrip, endStrip) ->
+                    verticalPass(temp, out, width, height, c, startStrip, endStrip));
+        } finally {
+            PixelBufferPool.shared().release(temp);
+        }
+    }
+
+    // {B, b1/b0, b2/b0, b3/b0}
+    static float[] coefficients(float sigma) {
+        double q = sigma >= 2.5
+                ? 0.98711 * sigma - 0.96330
+                : 3.97156 - 4.14554 * Math.sqrt(1 - 0.26891 * sigma);
+        double q2 = q * q;
+        double q3 = q2 * q;
+        double b0 = 1.57825 + 2.44413 * q + 1.4281 * q2 + 0.422205 * q3;
+        double b1 = 2.44413 * q + 2.85619 * q2 + 1.26661 * q3;
+        double b2 = -(1.4281 * q2 + 1.26661 * q3);
+        double b3 = 0.422205 * q3;
+        double b = 1 - (b1 + b2 + b3) / b0;
+        return new float[]{(float) b, (float) (b1 / b0), (float) (b2 / b0), (float) (b3 / b0)};
+    }
+
+    private static void horizontalPass(int[] in, int[] out, int width, float[] c, int startRow, int endRow) {
+        float[] line = new float[width];
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                out[row + x] = 0xFF000000;
+            }
+            for (int shift = 0; shift <= 16; shift += 8) {
+                for (int x = 0; x < width; x++) {
+                    line[x] = (in[row + x] >> shift) & 0xFF;
+                }
+                filterLine(line, c);
+                for (int x = 0; x < width; x++) {
+                    out[row + x] |= clampByte(line[x]) << shift;
+                }
+            }
+        }
+    }
+
+    private static void filterLine(float[] line, float[] c) {
+        float b = c[0], a1 = c[1], a2 = c[2], a3 = c[3];
+        int n = line.length;
+        // Causal pass, edges replicate the first sample
+        float w1 = line[0], w2 = line[0], w3 = line[0];
+        for (int i = 0; i < n; i++) {
+            float w = b * line[i] + a1 * w1 + a2 * w2 + a3 * w3;
+            line[i] = w;
+            w3 = w2;
+            w2 = w1;
+            w1 = w;
+        }
+        // Anti-causal pass, edges replicate the last causal output
+        float o1 = line[n - 1], o2 = line[n - 1], o3 = line[n - 1];
+        for (int i = n - 1; i >= 0; i--) {
+            float o = b * line[i] + a1 * o1 + a2 * o2 + a3 * o3;
+            line[i] = o;
+            o3 = o2;
+            o2 = o1;
+            o1 = o;
+        }
+    }
+
+    private static void verticalPass(int[] in, int[] out, int width, int height, float[] c,
+                                     int startStrip, int endStrip) {
+        float b = c[0], a1 = c[1], a2 = c[2], a3 = c[3];
+        // Causal results for the whole strip, three channels interleaved
+        float[] forward = new float[height * STRIP_WIDTH * 3];
+        float[] s1 = new float[STRIP_WIDTH * 3];
+        float[] s2 = new float[STRIP_WIDTH * 3];
+        float[] s3 = new float[STRIP_WIDTH * 3];
+
+        for (int strip = startStrip; strip < endStrip; strip++) {
+            int x0 = strip * STRIP_WIDTH;
+            int cols = Math.min(STRIP_WIDTH, width - x0);
+            int lanes = cols * 3;
+
+            for (int i = 0; i < cols; i++) {
+                int pixel = in[x0 + i];
+                for (int ch = 0; ch < 3; ch++) {
+                    float v = (pixel >> (16 - 8 * ch)) & 0xFF;
+                    s1[i * 3 + ch] = v;
+                    s2[i * 3 + ch] = v;
+                    s3[i * 3 + ch] = v;
+                }
+            }
+            for (int y = 0; y < height; y++) {
+                int row = y * width + x0;
+                int base = y * lanes;
+                for (int i = 0; i < cols; i++) {
+                    int pixel = in[row + i];
+                    for (int ch = 0; ch < 3; ch++) {
+                        int k = i * 3 + ch;
+                        float w = b * ((pixel >> (16 - 8 * ch)) & 0xFF) + a1 * s1[k] + a2 * s2[k] + a3 * s3[k];
+                        forward[base + k] = w;
+                        s3[k] = s2[k];
+                        s2[k] = s1[k];
+                        s1[k] = w;
+                    }
+                }
+            }
+
+            int lastBase = (height - 1) * lanes;
+            for (int k = 0; k < lanes; k++) {
+                float v = forward[lastBase + k];
+                s1[k] = v;
+                s2[k] = v;
+                s3[k] = v;
+            }
+            for (int y = height - 1; y >= 0; y--) {
+                int row = y * width + x0;
+                int base = y * lanes;
+                for (int i = 0; i < cols; i++) {
+                    int packed = 0xFF000000;
+                    for (int ch = 0; ch < 3; ch++) {
+                        int k = i * 3 + ch;
+                        float o = b * forward[base + k] + a1 * s1[k] + a2 * s2[k] + a3 * s3[k];
+                        s3[k] = s2[k];
+                        s2[k] = s1[k];
+                        s1[k] = o;
+                        packed |= clampByte(o) << (16 - 8 * ch);
+                    }
+                    out[row + i] = packed;
+                }
+            }
+        }
+    }
+
+    private static int clampByte(float v) {
+        return Math.max(0, Math.min(255, (int) (v + 0.5f)));
+    }
+}
@@ -0,0 +1,11 @@
+package com.light.renderscripttest;
+
+import android.graphics.Rect;
+
+import java.util.List;
+
+// A PixelFilter that can also redo only the output that depends on changed rectangles of its input.
+// out must hold the filter's output for the previous input; the rectangles rewritten are returned.
+public interface RegionFilter extends PixelFilter {
+    List<Rect> applyRegions(int[] pixels, int[] out, int width, int height, List<Rect> dirty);
+}
@@ -0,0 +1,67 @@
+package com.light.renderscripttest;
+
+import android.graphics.Bitmap;
+
+import androidx.renderscript.Allocation;
+import androidx.renderscript.Element;
+import androidx.renderscript.RenderScript;
+import androidx.renderscript.ScriptIntrinsicBlur;
+
+// ScriptIntrinsicBlur behind a pixel-array interface. Allocations are kept while the size stays the same.
+public class RenderScriptBlur {
+    // ScriptIntrinsicBlur only accepts radii in (0, 25]
+    public static final int MAX_RADIUS = 25;
+
+    private final RenderScript rs;
+    private final ScriptIntrinsicBlur blurScript;
+    private Bitmap bitmap;
+    private Allocation inAllocation, outAllocation;
+
+    public RenderScriptBlur(RenderScript rs) {
+        this.rs = rs;
+        this.blurScript = ScriptIntrinsicBlur.create(rs, Element.U8_4(rs));
+    }
+
+    public static boolean supportsRadius(float radius) {
+        return radius > 0 && radius <= MAX_RADIUS;
+    }
+
+    public synchronized void blur(int[] pixels, int[] out, int width, int height, float radius) {
+        if (!supportsRadius(radius)) {
+            throw new IllegalArgumentException("RenderScript blur radius must be in (0, " + MAX_RADIUS + "]: " + radius);
+        }
+        prepare(width, height);
+
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        inAllocation.copyFrom(bitmap);
+        blurScript.setRadius(radius);
+        blurScript.setInput(inAllocation);
+        blurScript.forEach(outAllocation);
+        outAllocation.copyTo(bitmap);
+        bitmap.getPixels(out, 0, width, 0, 0, width, height);
+    }
+
+    private void prepare(int width, int height) {
+        if (bitmap != null && bitmap.getWidth() == width && bitmap.getHeight() == height) {
+            return;
+        }
+        release();
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        inAllocation = Allocation.createFromBitmap(rs, bitmap, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
+        outAllocation = Allocation.createTyped(rs, inAllocation.getType());
+    }
+
+    // Frees the allocations but leaves the RenderScript context alive for the owner
+    public synchronized void release() {
+        if (inAllocation != null) {
+            inAllocation.destroy();
+            outAllocation.destroy();
+            inAllocation = null;
+            outAllocation = null;
+        }
+        if (bitmap != null) {
+            bitmap.recycle();
+            bitmap = null;
+        }
+    }
+}
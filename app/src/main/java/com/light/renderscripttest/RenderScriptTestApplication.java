@@ -0,0 +1,35 @@
+package com.light.renderscripttest;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+// Sizes the shared pixel buffer pool from the heap the device grants and empties it under memory pressure
+public class RenderScriptTestApplication extends Application {
+    private static final String TAG = "RenderScriptTestApp";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        ActivityManager activityManager = (ActivityManager) getSystemService(ACTIVITY_SERVICE);
+        // The manifest asks for a large heap; let idle buffers hold at most a quarter of it
+        long heapBytes = activityManager.getLargeMemoryClass() * 1024L * 1024L;
+        PixelBufferPool.shared().setMaxPooledBytes(Math.min(256L * 1024 * 1024, heapBytes / 4));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            Log.i(TAG, "Trim level " + level + ", dropping " + PixelBufferPool.shared().getPooledBytes() + " pooled bytes");
+            PixelBufferPool.shared().clear();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        PixelBufferPool.shared().clear();
+    }
+}
@@ -0,0 +1,259 @@
+package com.light.renderscripttest;
+
+import android.graphics.Bitmap;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Separable resampling of ARGB pixels: a horizontal pass into an intermediate of the target width, then a
+// vertical pass, each split into row bands. Filter weights depend only on (source size, target size, kernel)
+// per axis, so they are computed once as fixed-point tables and cached. When shrinking, the kernel is
+// widened by the scale factor so every source pixel contributes (no aliasing). Halving with BOX takes a
+// dedicated 2x2 averaging path.
+public final class ResizeEngine {
+
+    public enum Kernel {
+        BOX(0.5),
+        BILINEAR(1),
+        BICUBIC(2),      // Catmull-Rom (a = -0.5)
+        LANCZOS3(3);
+
+        final double support;
+
+        Kernel(double support) {
+            this.support = support;
+        }
+
+        double weight(double x) {
+            x = Math.abs(x);
+            switch (this) {
+                case BOX:
+                    return x < 0.5 ? 1 : 0;
+                case BILINEAR:
+                    return x < 1 ? 1 - x : 0;
+                case BICUBIC:
+                    if (x < 1) {
+                        return (1.5 * x - 2.5) * x * x + 1;
+                    }
+                    return x < 2 ? ((-0.5 * x + 2.5) * x - 4) * x + 2 : 0;
+                case LANCZOS3:
+                default:
+                    if (x == 0) {
+                        return 1;
+                    }
+                    if (x >= 3) {
+                        return 0;
+                    }
+                    double px = Math.PI * x;
+                    return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+            }
+        }
+    }
+
+    // Weights are scaled so each output's taps sum to 1 << PRECISION
+    private static final int PRECISION = 14;
+    private static final int MAX_CACHED_TABLES = 32;
+
+    // For each output index, the first source index, how many taps follow it and their weights
+    static final class Coefficients {
+        final int[] start;
+        final int[] count;
+        final int[] weights;
+        final int taps;
+
+        Coefficients(int[] start, int[] count, int[] weights, int taps) {
+            this.start = start;
+            this.count = count;
+            this.weights = weights;
+            this.taps = taps;
+        }
+    }
+
+    private static final Map<String, Coefficients> TABLES =
+            new LinkedHashMap<String, Coefficients>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Coefficients> eldest) {
+                    return size() > MAX_CACHED_TABLES;
+                }
+            };
+
+    private ResizeEngine() {
+    }
+
+    public static void resize(int[] pixels, int width, int height, int[] out, int targetWidth, int targetHeight,
+                              Kernel kernel, int threads) {
+        if (kernel == Kernel.BOX && targetWidth == (width + 1) / 2 && targetHeight == (height + 1) / 2) {
+            halve(pixels, width, height, out, threads);
+            return;
+        }
+        if (targetWidth == width && targetHeight == height) {
+            System.arraycopy(pixels, 0, out, 0, width * height);
+            return;
+        }
+        if (targetWidth == width) {
+            verticalPass(pixels, out, width, coefficients(height, targetHeight, kernel), targetHeight, threads);
+            return;
+        }
+        if (targetHeight == height) {
+            horizontalPass(pixels, out, width, height, coefficients(width, targetWidth, kernel), targetWidth, threads);
+            return;
+        }
+
+        PixelBufferPool pool = PixelBufferPool.shared();
+        int[] temp = pool.acquire(targetWidth * height);
+        try {
+            horizontalPass(pixels, temp, width, height, coefficients(width, targetWidth, kernel), targetWidth, threads);
+            verticalPass(temp, out, targetWidth, coefficients(height, targetHeight, kernel), targetHeight, threads);
+        } finally {
+            pool.release(temp);
+        }
+    }
+
+    public static Bitmap resize(Bitmap bitmap, int targetWidth, int targetHeight, Kernel kernel, int threads) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        PixelBufferPool pool = PixelBufferPool.shared();
+        int[] pixels = pool.acquire(width * height);
+        int[] out = pool.acquire(targetWidth * targetHeight);
+        try {
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            resize(pixels, width, height, out, targetWidth, targetHeight, kernel, threads);
+            Bitmap result = Bitmap.createBitmap(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+            result.setPixels(out, 0, targetWidth, 0, 0, targetWidth, targetHeight);
+            return result;
+        } finally {
+            pool.release(pixels);
+            pool.release(out);
+        }
+    }
+
+    // 2x2 box average into ((width + 1) / 2) x ((height + 1) / 2), duplicating the last row/column of odd sizes
+    public static void halve(int[] pixels, int width, int height, int[] out, int threads) {
+        int nw = (width + 1) / 2;
+        int nh = (height + 1) / 2;
+        ParallelRows.forEachBand(nh, threads, (startRow, endRow) -> {
+            for (int y = startRow; y < endRow; y++) {
+                int r0 = 2 * y * width;
+                int r1 = Math.min(2 * y + 1, height - 1) * width;
+                for (int x = 0; x < nw; x++) {
+                    int x0 = 2 * x;
+                    int x1 = Math.min(x0 + 1, width - 1);
+                    int a = pixels[r0 + x0], b = pixels[r0 + x1], c = pixels[r1 + x0], d = pixels[r1 + x1];
+                    // Red and blue share one add by sitting 16 bits apart; each sum fits in 10 bits
+                    int redBlue = (a & 0xFF00FF) + (b & 0xFF00FF) + (c & 0xFF00FF) + (d & 0xFF00FF) + 0x020002;
+                    int green = (a & 0xFF00) + (b & 0xFF00) + (c & 0xFF00) + (d & 0xFF00) + 0x0200;
+                    out[y * nw + x] = 0xFF000000 | ((redBlue >> 2) & 0xFF00FF) | ((green >> 2) & 0xFF00);
+                }
+            }
+        });
+    }
+
+    static synchronized Coefficients coefficients(int sourceSize, int targetSize, Kernel kernel) {
+        String key = sourceSize + ":" + targetSize + ":" + kernel;
+        Coefficients table = TABLES.get(key);
+        if (table == null) {
+            table = computeCoefficients(sourceSize, targetSize, kernel);
+            TABLES.put(key, table);
+        }
+        return table;
+    }
+
+    private static Coefficients computeCoefficients(int sourceSize, int targetSize, Kernel kernel) {
+        double scale = (double) sourceSize / targetSize;
+        // Shrinking widens the kernel over the source so it also low-passes
+        double filterScale = Math.max(1, scale);
+        double support = kernel.support * filterScale;
+        int taps = (int) Math.ceil(support) * 2 + 2;
+        int[] start = new int[targetSize];
+        int[] count = new int[targetSize];
+        int[] weights = new int[targetSize * taps];
+        double[] raw = new double[taps];
+
+        for (int i = 0; i < targetSize; i++) {
+            // Pixel-centre aligned
+            double center = (i + 0.5) * scale;
+            int first = Math.max(0, (int) Math.floor(center - support));
+            int last = Math.min(sourceSize, (int) Math.ceil(center + support));
+            int n = Math.min(taps, last - first);
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                raw[k] = kernel.weight((first + k + 0.5 - center) / filterScale);
+                sum += raw[k];
+            }
+            // Normalize over the taps that fall inside the image, then fix rounding on the largest tap
+            int total = 0;
+            int largest = 0;
+            for (int k = 0; k < n; k++) {
+                int w = sum == 0 ? 0 : (int) Math.round(raw[k] / sum * (1 << PRECISION));
+                weights[i * taps + k] = w;
+                total += w;
+                if (Math.abs(w) > Math.abs(weights[i * taps + largest])) {
+                    largest = k;
+                }
+            }
+            weights[i * taps + largest] += (1 << PRECISION) - total;
+            start[i] = first;
+            count[i] = n;
+        }
+        return new Coefficients(start, count, weights, taps);
+    }
+
+    private static void horizontalPass(int[] in, int[] out, int width, int height, Coefficients c,
+                                       int targetWidth, int threads) {
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) -> {
+            for (int y = startRow; y < endRow; y++) {
+                int row = y * width;
+                int outRow = y * targetWidth;
+                for (int x = 0; x < targetWidth; x++) {
+                    int base = x * c.taps;
+                    int src = row + c.start[x];
+                    int red = 1 << (PRECISION - 1), green = red, blue = red;
+                    for (int k = 0, n = c.count[x]; k < n; k++) {
+                        int pixel = in[src + k];
+                        int w = c.weights[base + k];
+                        red += ((pixel >> 16) & 0xFF) * w;
+                        green += ((pixel >> 8) & 0xFF) * w;
+                        blue += (pixel & 0xFF) * w;
+                    }
+                    out[outRow + x] = pack(red, green, blue);
+                }
+            }
+        });
+    }
+
+    // Row-major: each output row is a weighted sum of whole source rows
+    private static void verticalPass(int[] in, int[] out, int width, Coefficients c, int targetHeight, int threads) {
+        ParallelRows.forEachBand(targetHeight, threads, (startRow, endRow) -> {
+            int[] red = new int[width], green = new int[width], blue = new int[width];
+            for (int y = startRow; y < endRow; y++) {
+                int base = y * c.taps;
+                Arrays.fill(red, 1 << (PRECISION - 1));
+                Arrays.fill(green, 1 << (PRECISION - 1));
+                Arrays.fill(blue, 1 << (PRECISION - 1));
+                for (int k = 0, n = c.count[y]; k < n; k++) {
+                    int src = (c.start[y] + k) * width;
+                    int w = c.weights[base + k];
+                    for (int x = 0; x < width; x++) {
+                        int pixel = in[src + x];
+                        red[x] += ((pixel >> 16) & 0xFF) * w;
+                        green[x] += ((pixel >> 8) & 0xFF) * w;
+                        blue[x] += (pixel & 0xFF) * w;
+                    }
+                }
+                int outRow = y * width;
+                for (int x = 0; x < width; x++) {
+                    out[outRow + x] = pack(red[x], green[x], blue[x]);
+                }
+            }
+        });
+    }
+
+    // Sums carry the rounding bias already; negative lobes (bicubic, Lanczos) can overshoot either way
+    private static int pack(int red, int green, int blue) {
+        red = Math.max(0, Math.min(255, red >> PRECISION));
+        green = Math.max(0, Math.min(255, green >> PRECISION));
+        blue = Math.max(0, Math.min(255, blue >> PRECISION));
+        return 0xFF000000 | (red << 16) | (green << 8) | blue;
+    }
+}
@@ -0,0 +1,330 @@
+package com.light.renderscripttest;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Two-tier cache of filter outputs keyed by a hash of the input pixels plus operation, version and parameters.
+// The memory tier is an LRU bounded by bytes; the disk tier keeps raw ARGB outputs that are read back through
+// a memory-mapped file. Bumping an operation's version changes its keys, and a change to the combined
+// version string wipes the disk tier on the next start.
+public class ResultCache {
+    private static final String TAG = "ResultCache";
+    private static final int MAGIC = 0x52434831;  // "RCH1"
+    private static final String VERSION_FILE = ".versions";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Every operation that stores results here, with the version of its algorithm
+    static final String VERSIONS = "gaussian_blur=" + GaussianBlur.VERSION + ";sobel=" + SobelFilter.VERSION
+            + ";median=" + MedianFilter.VERSION;
+
+    private static ResultCache instance;
+
+    public static synchronized ResultCache getInstance(Context context) {
+        if (instance == null) {
+            File dir = new File(context.getApplicationContext().getCacheDir(), "results");
+            instance = new ResultCache(dir, VERSIONS, 64L * 1024 * 1024, 512L * 1024 * 1024);
+        }
+        return instance;
+    }
+
+    public static class Key {
+        final String id;
+        final int width, height;
+
+        Key(String id, int width, int height) {
+            this.id = id;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+
+    private static class Entry {
+        final int[] pixels;
+
+        Entry(int[] pixels) {
+            this.pixels = pixels;
+        }
+    }
+
+    private final File dir;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    // Disk file names to sizes in access order, eldest first. Kept in memory because setLastModified
+    // often fails on app storage; file times only seed the order at startup.
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean mtimeWarned;
+    private long memoryBytes;
+    private long diskBytes;
+
+    private long memoryHits, diskHits, misses, memoryEvictions, diskEvictions;
+
+    public ResultCache(File dir, String versions, long maxMemoryBytes, long maxDiskBytes) {
+        this.dir = dir;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        openDisk(versions);
+    }
+
+    // params should list every argument that affects the output, e.g. "r=25,s=16.3"
+    public static Key key(String operation, int version, int[] pixels, int width, int height, String params) {
+        String id = String.format(Locale.US, "%s-v%d-%dx%d-%016x-%s",
+                operation, version, width, height, hashPixels(pixels, width * height), params);
+        return new Key(id, width, height);
+    }
+
+    // Returns a copy of the cached output, or null on a miss
+    public synchronized int[] get(Key key) {
+        Entry entry = memory.get(key.id);
+        if (entry != null) {
+            memoryHits++;
+            return entry.pixels.clone();
+        }
+        int[] pixels = readDisk(key);
+        if (pixels != null) {
+            diskHits++;
+            putMemory(key.id, pixels.clone());
+            return pixels;
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(Key key, int[] output) {
+        int[] copy = Arrays.copyOf(output, key.width * key.height);
+        putMemory(key.id, copy);
+        writeDisk(key, copy);
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        memoryBytes = 0;
+        diskIndex.clear();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().equals(VERSION_FILE)) {
+                    file.delete();
+                }
+            }
+        }
+        diskBytes = 0;
+    }
+
+    public synchronized String stats() {
+        long lookups = memoryHits + diskHits + misses;
+        double hitRate = lookups == 0 ? 0 : 100.0 * (memoryHits + diskHits) / lookups;
+        return String.format(Locale.US,
+                "hits %d mem / %d disk, misses %d (%.1f%% hit), evictions %d mem / %d disk, %d KB mem, %d KB disk",
+                memoryHits, diskHits, misses, hitRate, memoryEvictions, diskEvictions,
+                memoryBytes / 1024, diskBytes / 1024);
+    }
+
+    public synchronized long getMemoryHits() {
+        return memoryHits;
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return memoryEvictions + diskEvictions;
+    }
+
+    // 64-bit multiply-xorshift over four independent lanes so the loop is not one long dependency chain
+    static long hashPixels(int[] pixels, int length) {
+        final long m = 0x9E3779B97F4A7C15L;
+        long h0 = 0x243F6A8885A308D3L, h1 = 0x13198A2E03707344L, h2 = 0xA4093822299F31D0L, h3 = 0x082EFA98EC4E6C89L;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            h0 = (h0 ^ pixels[i]) * m;
+            h1 = (h1 ^ pixels[i + 1]) * m;
+            h2 = (h2 ^ pixels[i + 2]) * m;
+            h3 = (h3 ^ pixels[i + 3]) * m;
+        }
+        for (; i < length; i++) {
+            h0 = (h0 ^ pixels[i]) * m;
+        }
+        long h = Long.rotateLeft(h0, 1) ^ Long.rotateLeft(h1, 7) ^ Long.rotateLeft(h2, 12) ^ Long.rotateLeft(h3, 18);
+        h ^= length;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private void putMemory(String id, int[] pixels) {
+        long bytes = 4L * pixels.length;
+        if (bytes > maxMemoryBytes) {
+            return;
+        }
+        Entry previous = memory.put(id, new Entry(pixels));
+        if (previous != null) {
+            memoryBytes -= 4L * previous.pixels.length;
+        }
+        memoryBytes += bytes;
+        Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            memoryBytes -= 4L * eldest.getValue().pixels.length;
+            it.remove();
+            memoryEvictions++;
+        }
+    }
+
+    private void openDisk(String versions) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create " + dir + ", disk tier disabled");
+            return;
+        }
+        File versionFile = new File(dir, VERSION_FILE);
+        String stored = null;
+        if (versionFile.isFile()) {
+            try (RandomAccessFile file = new RandomAccessFile(versionFile, "r")) {
+                byte[] bytes = new byte[(int) file.length()];
+                file.readFully(bytes);
+                stored = new String(bytes, UTF_8);
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot read " + versionFile, e);
+            }
+        }
+        if (!versions.equals(stored)) {
+            clear();
+            try (FileOutputStream out = new FileOutputStream(versionFile)) {
+                out.write(versions.getBytes(UTF_8));
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot write " + versionFile, e);
+            }
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File a, File b) {
+                    return Long.compare(a.lastModified(), b.lastModified());
+                }
+            });
+            for (File file : files) {
+                if (!file.getName().equals(VERSION_FILE)) {
+                    diskIndex.put(file.getName(), file.length());
+                    diskBytes += file.length();
+                }
+            }
+        }
+    }
+
+    private File fileFor(Key key) {
+        byte[] id = key.id.getBytes(UTF_8);
+        int[] chars = new int[id.length];
+        for (int i = 0; i < id.length; i++) {
+            chars[i] = id[i];
+        }
+        return new File(dir, String.format(Locale.US, "%016x.bin", hashPixels(chars, chars.length)));
+    }
+
+    // Layout: magic, width, height, id length, id bytes, then width * height ARGB ints, all native order
+    private void writeDisk(Key key, int[] pixels) {
+        if (!dir.isDirectory()) {
+            return;
+        }
+        byte[] id = key.id.getBytes(UTF_8);
+        long size = 16L + id.length + 4L * pixels.length;
+        if (size > maxDiskBytes) {
+            return;
+        }
+        File file = fileFor(key);
+        Long previous = diskIndex.remove(file.getName());
+        if (previous != null) {
+            diskBytes -= previous;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.nativeOrder());
+            buffer.putInt(MAGIC).putInt(key.width).putInt(key.height).putInt(id.length).put(id);
+            buffer.asIntBuffer().put(pixels);
+            diskIndex.put(file.getName(), size);
+            diskBytes += size;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write " + file, e);
+            file.delete();
+            return;
+        }
+        trimDisk();
+    }
+
+    private int[] readDisk(Key key) {
+        File file = fileFor(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            buffer.order(ByteOrder.nativeOrder());
+            byte[] expectedId = key.id.getBytes(UTF_8);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != key.width || buffer.getInt() != key.height
+                    || buffer.getInt() != expectedId.length) {
+                return null;
+            }
+            byte[] id = new byte[expectedId.length];
+            buffer.get(id);
+            // The file name is only a hash of the id, so confirm it is really this entry
+            if (!Arrays.equals(id, expectedId)) {
+                return null;
+            }
+            int[] pixels = new int[key.width * key.height];
+            ByteBuffer data = buffer.slice().order(ByteOrder.nativeOrder());
+            data.asIntBuffer().get(pixels);
+            // Touching the index entry makes it most recently used; the file time only carries the
+            // order over to the next start
+            diskIndex.get(file.getName());
+            if (!file.setLastModified(System.currentTimeMillis()) && !mtimeWarned) {
+                mtimeWarned = true;
+                Log.i(TAG, "setLastModified not supported in " + dir + ", disk order resets on restart");
+            }
+            return pixels;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot read " + file, e);
+            return null;
+        }
+    }
+
+    // Drops least recently used files until under budget
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> it = diskIndex.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            File file = new File(dir, eldest.getKey());
+            if (file.delete() || !file.exists()) {
+                diskBytes -= eldest.getValue();
+                it.remove();
+                diskEvictions++;
+            }
+        }
+    }
+}
@@ -3,9 +3,10 @@ package com.light.renderscripttest;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Color;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Choreographer;
+import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
 
@@ -14,17 +15,27 @@ import androidx.renderscript.Allocation;
 import androidx.renderscript.RenderScript;
 import androidx.renderscript.Script;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 public class SobelActivity extends AppCompatActivity {
+    private static final String TAG = "SobelActivity";
     private Bitmap mBitmapIn, mBitmapOutRS, mBitmapOutJava;
-    private ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final ProcessingScheduler scheduler = ProcessingScheduler.getInstance();
+    // Guards the allocations against release while an RS run is still using them
+    private final Object rsLock = new Object();
+    private boolean rsReleased;
     private MyGLSurfaceView glSurfaceView;
     public long timeJava, timeRS, timeGL;
+    // Result cache lookup (key hash plus read), kept apart from the Java Sobel time
+    public long timeCache;
     private RenderScript rs;
     private Allocation inAllocation, outAllocation;
     private ScriptC_sobel script;
+    private ResultCache resultCache;
+    private boolean javaCached;
+    // Radius of the median pre-stage that removes noise before Java edge detection; 0 disables it
+    private int medianRadius;
+    // Optional morphology post-stage on the Java edge map ("morphology" extra: ERODE, DILATE, OPEN or CLOSE)
+    private Morphology.Operation morphology;
+    private int morphologyRadius;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -32,56 +43,56 @@ public class SobelActivity extends AppCompatActivity {
         setContentView(R.layout.activity_sobel);
         Intent intent = getIntent();
         int size = intent.getIntExtra("size", 256);
+        medianRadius = intent.getIntExtra("median", 0);
+        String morphologyName = intent.getStringExtra("morphology");
+        morphology = morphologyName != null ? Morphology.Operation.valueOf(morphologyName) : null;
+        morphologyRadius = intent.getIntExtra("morphologyRadius", 1);
+        int resource = R.drawable.i256x256;
         switch (size) {
-            case 256:
-                mBitmapIn = loadBitmap(R.drawable.i256x256);
-                break;
             case 640:
-                mBitmapIn = loadBitmap(R.drawable.i640x480);
+                resource = R.drawable.i640x480;
                 break;
             case 1024:
-                mBitmapIn = loadBitmap(R.drawable.i1024x1024);
+                resource = R.drawable.i1024x1024;
                 break;
             case 1920:
-                mBitmapIn = loadBitmap(R.drawable.i1920x1080);
+                resource = R.drawable.i1920x1080;
                 break;
         }
-        int w = mBitmapIn.getWidth();
-        int h = mBitmapIn.getHeight();
-        ImageView in = findViewById(R.id.inputImage);
-        in.setImageBitmap(mBitmapIn);
-        mBitmapOutRS = Bitmap.createBitmap(w, h, mBitmapIn.getConfig());
-        mBitmapOutJava = Bitmap.createBitmap(w, h, mBitmapIn.getConfig());
-
         TextView timeViewJava = findViewById(R.id.timeJava);
         TextView timeViewRS = findViewById(R.id.timeRS);
         glSurfaceView = findViewById(R.id.outputGL);
-        // Initialize RenderScript
-        rs = RenderScript.create(this);
-
-        // Create input and output allocations
-        inAllocation = Allocation.createFromBitmap(rs, mBitmapIn, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
-        outAllocation = Allocation.createTyped(rs, inAllocation.getType());
+        // Its surface must not be created before the renderer is set, and that waits for the input
+        glSurfaceView.setVisibility(View.GONE);
+        resultCache = ResultCache.getInstance(this);
+        // Reuse the app-wide RenderScript context
+        rs = scheduler.getRenderScript(this);
 
         // Load the Sobel RenderScript
-        script = new ScriptC_sobel(rs);
-
-
-        // Benchmark GLSurfaceView rendering
-        benchmarkGLRendering();
+        script = scheduler.backend(this, ScriptC_sobel.class, ScriptC_sobel::new);
+
+        // Load the input, then benchmark Java sobel, then RenderScript sobel; one request so the two timings
+        // never overlap. Generating or resizing large inputs takes seconds, so none of it runs on this thread
+        final int inputResource = resource;
+        scheduler.submit(TAG, ProcessingScheduler.Lane.INTERACTIVE, () -> {
+            if (!loadInput(inputResource)) {
+                return;
+            }
+            runOnUiThread(this::bindInput);
 
-        // Benchmark Java sobel
-        executorService.execute(() -> {
             applySobelJava();
             runOnUiThread(() -> {
                 ImageView outputJava = findViewById(R.id.outputJava);
                 outputJava.setImageBitmap(mBitmapOutJava);
-                timeViewJava.setText("Time Java: " + timeJava + " μs");
+                timeViewJava.setText(javaCached
+                        ? "Time Java: cached, lookup " + timeCache + " μs"
+                        : "Time Java: " + timeJava + " μs");
+                Log.i(TAG, "Result cache: " + resultCache.stats());
             });
-        });
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
 
-        // Benchmark RenderScript sobel
-        executorService.execute(() -> {
             applySobelRS();
             runOnUiThread(() -> {
                 ImageView outputRS = findViewById(R.id.outputRS);
@@ -90,11 +101,76 @@ public class SobelActivity extends AppCompatActivity {
             });
         });
     }
+
+    // Worker thread: input bitmap, outputs and allocations. False once the screen has gone
+    private boolean loadInput(int resource) {
+        Bitmap bitmap = loadBitmap(resource);
+        synchronized (rsLock) {
+            if (rsReleased || Thread.currentThread().isInterrupted()) {
+                bitmap.recycle();
+                return false;
+            }
+            int w = bitmap.getWidth();
+            int h = bitmap.getHeight();
+            mBitmapIn = bitmap;
+            mBitmapOutRS = Bitmap.createBitmap(w, h, bitmap.getConfig());
+            mBitmapOutJava = Bitmap.createBitmap(w, h, bitmap.getConfig());
+            inAllocation = Allocation.createFromBitmap(rs, mBitmapIn, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
+            outAllocation = Allocation.createTyped(rs, inAllocation.getType());
+            return true;
+        }
+    }
+
+    // UI thread, once the input is loaded
+    private void bindInput() {
+        if (isDestroyed()) {
+            return;
+        }
+        ImageView in = findViewById(R.id.inputImage);
+        in.setImageBitmap(mBitmapIn);
+
+        // Benchmark GLSurfaceView rendering
+        benchmarkGLRendering();
+        glSurfaceView.setVisibility(View.VISIBLE);
+    }
+
     private Bitmap loadBitmap(int resource) {
+        // A generated image requested through the intent replaces the bundled drawable
+        Bitmap synthetic = SyntheticImage.fromIntent(getIntent());
+        if (synthetic != null) {
+            return synthetic;
+        }
         final BitmapFactory.Options options = new BitmapFactory.Options();
         options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-        return BitmapFactory.decodeResource(getResources(), resource, options);
+        Bitmap bitmap = BitmapFactory.decodeResource(getResources(), resource, options);
+        // Sizes without a drawable of their own are scaled from it
+        int width = getIntent().getIntExtra("width", bitmap.getWidth());
+        int height = getIntent().getIntExtra("height", bitmap.getHeight());
+        if (width != bitmap.getWidth() || height != bitmap.getHeight()) {
+            Bitmap scaled = ResizeEngine.resize(bitmap, width, height, ResizeEngine.Kernel.LANCZOS3, ParallelRows.CORES);
+            bitmap.recycle();
+            return scaled;
+        }
+        return bitmap;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        scheduler.cancel(TAG);
+        // The allocations belong to this screen; the context and script stay alive for the next one.
+        // Released here rather than queued, as a full queue could reject the cleanup; an RS run still in
+        // flight holds rsLock until its kernel returns
+        synchronized (rsLock) {
+            rsReleased = true;
+            // Null while the input is still loading
+            if (inAllocation != null) {
+                inAllocation.destroy();
+                outAllocation.destroy();
+            }
+        }
     }
+
     private void warmUp() {
         applySobelJava();
         applySobelRS();
@@ -103,50 +179,42 @@ public class SobelActivity extends AppCompatActivity {
         int width = mBitmapIn.getWidth();
         int height = mBitmapIn.getHeight();
 
-        // Sobel Kernels for X and Y
-        int[] sobelX = {
-                -1, 0, 1,
-                -2, 0, 2,
-                -1, 0, 1
-        };
-
-        int[] sobelY = {
-                -1, -2, -1,
-                0, 0, 0,
-                1, 2, 1
-        };
-
         // Create a pixel array to hold the input and output pixels
         int[] pixelsIn = new int[width * height];
-        int[] pixelsOut = new int[width * height];
 
         // Get all the input pixels at once
         mBitmapIn.getPixels(pixelsIn, 0, width, 0, 0, width, height);
 
-        long startTime = System.nanoTime();
-
-        for (int y = 1; y < height - 1; y++) {
-            for (int x = 1; x < width - 1; x++) {
-                int gx = 0, gy = 0;
-
-                // Apply Sobel X and Sobel Y
-                for (int ky = -1; ky <= 1; ky++) {
-                    for (int kx = -1; kx <= 1; kx++) {
-                        // Get the pixel color (grayscale) from the input array
-                        int pixel = pixelsIn[(y + ky) * width + (x + kx)];
-                        int gray = (int) (0.299 * Color.red(pixel) + 0.587 * Color.green(pixel) + 0.114 * Color.blue(pixel));
-
-                        gx += sobelX[(ky + 1) * 3 + (kx + 1)] * gray;
-                        gy += sobelY[(ky + 1) * 3 + (kx + 1)] * gray;
-                    }
-                }
+        // Cache work stays outside the timed window so "Time Java" is always the filter itself
+        long lookupStart = System.nanoTime();
+        String stages = medianRadius > 0 ? "median=" + medianRadius + "v" + MedianFilter.VERSION : "";
+        if (morphology != null) {
+            stages += ",morphology=" + morphology + morphologyRadius;
+        }
+        ResultCache.Key key = ResultCache.key("sobel", SobelFilter.VERSION, pixelsIn, width, height, stages);
+        int[] pixelsOut = resultCache.get(key);
+        timeCache = (System.nanoTime() - lookupStart) / 1000;
+        javaCached = pixelsOut != null;
+        if (javaCached) {
+            mBitmapOutJava.setPixels(pixelsOut, 0, width, 0, 0, width, height);
+            return;
+        }
 
-                // Calculate the gradient magnitude
-                int magnitude = (int) Math.min(255, Math.sqrt(gx * gx + gy * gy));
+        long startTime = System.nanoTime();
 
-                // Set the edge pixel color (grayscale) in the output array
-                pixelsOut[y * width + x] = Color.rgb(magnitude, magnitude, magnitude);
-            }
+        pixelsOut = new int[width * height];
+        int[] edgesIn = pixelsIn;
+        if (medianRadius > 0) {
+            edgesIn = new int[width * height];
+            MedianFilter.apply(pixelsIn, edgesIn, width, height, medianRadius, ParallelRows.CORES);
+        }
+        SobelFilter.apply(edgesIn, pixelsOut, width, height);
+        if (morphology != null) {
+            // Joins broken edges (CLOSE, DILATE) or drops isolated responses (OPEN, ERODE); in and out may not alias
+            int[] edges = pixelsOut;
+            pixelsOut = new int[width * height];
+            Morphology.apply(morphology, edges, pixelsOut, width, height, morphologyRadius, morphologyRadius,
+                    ParallelRows.CORES);
         }
 
         // Set the output pixels all at once
@@ -154,33 +222,35 @@ public class SobelActivity extends AppCompatActivity {
 
         long endTime = System.nanoTime();
         timeJava = (endTime - startTime) / 1000;
+        resultCache.put(key, pixelsOut);
     }
 
 
     private void applySobelRS() {
-        // Bind the input allocation to the script
-        script.set_gIn(inAllocation);
-        script.set_gOut(outAllocation);
-
-        // Set launch options (no special parameters needed here)
-        Script.LaunchOptions launchOptions = new Script.LaunchOptions();
-        launchOptions.setX(0, inAllocation.getType().getX() - 1);
-        launchOptions.setY(0, inAllocation.getType().getY() - 1);
-
-        long startTime = System.nanoTime();
+        synchronized (rsLock) {
+            if (rsReleased) {
+                return;
+            }
+            // Bind the input allocation to the script
+            script.set_gIn(inAllocation);
+            script.set_gOut(outAllocation);
 
-        // Execute the Sobel operation
-        script.forEach_root(outAllocation, launchOptions);
+            // Set launch options (no special parameters needed here)
+            Script.LaunchOptions launchOptions = new Script.LaunchOptions();
+            launchOptions.setX(0, inAllocation.getType().getX() - 1);
+            launchOptions.setY(0, inAllocation.getType().getY() - 1);
 
-        // Copy the result to the output Bitmap
-        outAllocation.copyTo(mBitmapOutRS);
+            long startTime = System.nanoTime();
 
-        long endTime = System.nanoTime();
-        timeRS = (endTime - startTime)/1000;
+            // Execute the Sobel operation
+            script.forEach_root(outAllocation, launchOptions);
 
+            // Copy the result to the output Bitmap
+            outAllocation.copyTo(mBitmapOutRS);
 
-        // Destroy the RenderScript context to release resources
-        rs.destroy();
+            long endTime = System.nanoTime();
+            timeRS = (endTime - startTime)/1000;
+        }
     }
     private void benchmarkGLRendering() {
         // Get the aspect ratio of the bitmap
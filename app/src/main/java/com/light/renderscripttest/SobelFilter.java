@@ -0,0 +1,89 @@
+package com.light.renderscripttest;
+
+import android.graphics.Color;
+import android.graphics.Rect;
+
+import java.util.List;
+
+// Sobel gradient magnitude on the luminance of ARGB pixels. The one-pixel border is left at 0.
+public final class SobelFilter {
+    // Bump whenever the output changes so cached results are not reused
+    public static final int VERSION = 1;
+
+    // Sobel Kernels for X and Y
+    private static final int[] SOBEL_X = {
+            -1, 0, 1,
+            -2, 0, 2,
+            -1, 0, 1
+    };
+
+    private static final int[] SOBEL_Y = {
+            -1, -2, -1,
+            0, 0, 0,
+            1, 2, 1
+    };
+
+    private SobelFilter() {
+    }
+
+    public static void apply(int[] pixelsIn, int[] pixelsOut, int width, int height) {
+        applyRect(pixelsIn, pixelsOut, width, 1, 1, width - 1, height - 1);
+    }
+
+    // Recomputes only the output around the dirty rectangles of pixelsIn; pixelsOut must hold the result
+    // for the previous input. Border pixels inside a region are set to 0, so a previous output that was
+    // shifted (see FrameStreamProcessor) ends up with the same border as a full pass. Returns the
+    // rectangles that were rewritten.
+    public static List<Rect> applyRegions(int[] pixelsIn, int[] pixelsOut, int width, int height, List<Rect> dirty) {
+        List<Rect> regions = DirtyRegions.affected(dirty, 1, width, height);
+        for (Rect region : regions) {
+            clearBorder(pixelsOut, width, height, region);
+            applyRect(pixelsIn, pixelsOut, width, Math.max(1, region.left), Math.max(1, region.top),
+                    Math.min(width - 1, region.right), Math.min(height - 1, region.bottom));
+        }
+        return regions;
+    }
+
+    private static void clearBorder(int[] pixelsOut, int width, int height, Rect region) {
+        for (int y = region.top; y < region.bottom; y++) {
+            if (y == 0 || y == height - 1) {
+                for (int x = region.left; x < region.right; x++) {
+                    pixelsOut[y * width + x] = 0;
+                }
+            } else {
+                if (region.left == 0) {
+                    pixelsOut[y * width] = 0;
+                }
+                if (region.right == width) {
+                    pixelsOut[y * width + width - 1] = 0;
+                }
+            }
+        }
+    }
+
+    private static void applyRect(int[] pixelsIn, int[] pixelsOut, int width, int left, int top, int right, int bottom) {
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                int gx = 0, gy = 0;
+
+                // Apply Sobel X and Sobel Y
+                for (int ky = -1; ky <= 1; ky++) {
+                    for (int kx = -1; kx <= 1; kx++) {
+                        // Get the pixel color (grayscale) from the input array
+                        int pixel = pixelsIn[(y + ky) * width + (x + kx)];
+                        int gray = (int) (0.299 * Color.red(pixel) + 0.587 * Color.green(pixel) + 0.114 * Color.blue(pixel));
+
+                        gx += SOBEL_X[(ky + 1) * 3 + (kx + 1)] * gray;
+                        gy += SOBEL_Y[(ky + 1) * 3 + (kx + 1)] * gray;
+                    }
+                }
+
+                // Calculate the gradient magnitude
+                int magnitude = (int) Math.min(255, Math.sqrt(gx * gx + gy * gy));
+
+                // Set the edge pixel color (grayscale) in the output array
+                pixelsOut[y * width + x] = Color.rgb(magnitude, magnitude, magnitude);
+            }
+        }
+    }
+}
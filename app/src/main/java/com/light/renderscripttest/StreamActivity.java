@@ -0,0 +1,112 @@
+package com.light.renderscripttest;
+
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Streams camera-sized synthetic frames through the Java kernels and shows sustained FPS.
+// Extras: "ops" (string array of GRAYSCALE, BLUR, SOBEL, applied in order), "width", "height",
+// "fps" (0 = as fast as possible), "ring", "radius", "sigma", "threads".
+public class StreamActivity extends AppCompatActivity {
+    private static final String TAG = "StreamActivity";
+    private static final long STATS_INTERVAL_MS = 500;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Set from the consumer filling the back bitmap until the UI has swapped it in; the consumer only
+    // touches back while it holds the flag, the UI only swaps while it is set
+    private final AtomicBoolean displayPending = new AtomicBoolean();
+    private FrameStreamProcessor stream;
+    // Double buffered: front is what the ImageView draws and is never written
+    private Bitmap front, back;
+    private TextView statsView;
+
+    private final Runnable statsUpdater = new Runnable() {
+        @Override
+        public void run() {
+            statsView.setText(stream.getStats().toString());
+            handler.postDelayed(this, STATS_INTERVAL_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stream);
+        ImageView output = findViewById(R.id.streamOutput);
+        statsView = findViewById(R.id.streamStats);
+
+        Intent intent = getIntent();
+        int width = intent.getIntExtra("width", 1280);
+        int height = intent.getIntExtra("height", 720);
+        float fps = intent.getFloatExtra("fps", 30f);
+        int ring = intent.getIntExtra("ring", 3);
+        int radius = intent.getIntExtra("radius", 5);
+        float sigma = intent.getFloatExtra("sigma", radius / 3f);
+        float bilateralSigma = intent.getFloatExtra("bilateralSigma", BilateralGrid.DEFAULT_SIGMA_SPATIAL);
+        int threads = intent.getIntExtra("threads", ParallelRows.CORES);
+        String[] ops = intent.getStringArrayExtra("ops");
+        if (ops == null) {
+            ops = new String[]{intent.getStringExtra("op") != null ? intent.getStringExtra("op") : PixelFilters.Op.SOBEL.name()};
+        }
+
+        List<PixelFilter> stages = new ArrayList<>();
+        for (String op : ops) {
+            stages.add(PixelFilters.create(PixelFilters.Op.valueOf(op), radius, sigma, bilateralSigma, threads));
+        }
+        setTitle("Stream " + width + "x" + height + " " + TextUtils.join(" > ", ops));
+
+        front = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        back = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        output.setImageBitmap(front);
+        stream = new FrameStreamProcessor(width, height, stages, ring, fps);
+        stream.start(FrameStreamProcessor.panningSource(SyntheticImage.Pattern.NATURAL, width, height, SyntheticImage.DEFAULT_SEED),
+                (frame, w, h, index) -> {
+                    // Skip display while the previous frame is still waiting for the UI, so drawing never stalls the stream
+                    if (displayPending.compareAndSet(false, true)) {
+                        back.setPixels(frame, 0, w, 0, 0, w, h);
+                        handler.post(() -> {
+                            if (isDestroyed()) {
+                                return;
+                            }
+                            // Once the view holds the new bitmap no later draw reads the old one,
+                            // so the consumer may start writing it
+                            Bitmap shown = back;
+                            back = front;
+                            front = shown;
+                            output.setImageBitmap(front);
+                            displayPending.set(false);
+                        });
+                    }
+                });
+        handler.postDelayed(statsUpdater, STATS_INTERVAL_MS);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacks(statsUpdater);
+        // stop() waits for the frame in flight, which for a 4K bilateral or median stage takes far too long
+        // to block teardown; frames it still delivers are dropped by the isDestroyed() check
+        FrameStreamProcessor stopping = stream;
+        new Thread(() -> {
+            try {
+                stopping.stop();
+                Log.i(TAG, "Stream stopped: " + stopping.getStats());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "stream-stop").start();
+    }
+}
@@ -0,0 +1,216 @@
+package com.light.renderscripttest;
+
+// Per-channel integral image of ARGB pixels: entry (x, y) holds the sum of every pixel above and left of it.
+// Any rectangle sum then costs four lookups, so box filters, local means and local variances run in the same
+// time for every radius. Tables are (width + 1) x (height + 1) with a zero first row and column, which keeps
+// queries branch-free. Channel sums are ints while 255 * width * height fits one (up to ~8.4M pixels, so
+// 3840x2160 included) and longs beyond. Sums of squares grow by up to 65025 per pixel and would overflow an
+// int past ~33K pixels, so they are always longs. Windows are clipped at the border and averaged over the
+// pixels they actually cover.
+public class SummedAreaTable {
+
+    public static final int RED = 0;
+    public static final int GREEN = 1;
+    public static final int BLUE = 2;
+
+    private static final int[] SHIFTS = {16, 8, 0};
+    // Largest pixel count whose 8-bit channel sum fits an int
+    static final long MAX_INT_PIXELS = Integer.MAX_VALUE / 255;
+
+    public final int width;
+    public final int height;
+    private final int stride;
+    // Exactly one of sums and wideSums is set
+    private final int[][] sums;
+    private final long[][] wideSums;
+    // Sums of squared values, only built when variances are needed
+    private final long[][] squares;
+
+    private SummedAreaTable(int width, int height, boolean withSquares, boolean wide) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 1;
+        int length = stride * (height + 1);
+        sums = wide ? null : new int[][]{new int[length], new int[length], new int[length]};
+        wideSums = wide ? new long[][]{new long[length], new long[length], new long[length]} : null;
+        squares = withSquares ? new long[][]{new long[length], new long[length], new long[length]} : null;
+    }
+
+    public static SummedAreaTable build(int[] pixels, int width, int height, boolean withSquares, int threads) {
+        return build(pixels, width, height, withSquares, (long) width * height > MAX_INT_PIXELS, threads);
+    }
+
+    // wide forces long channel sums, which build() only picks for images too large for ints
+    static SummedAreaTable build(int[] pixels, int width, int height, boolean withSquares, boolean wide, int threads) {
+        SummedAreaTable table = new SummedAreaTable(width, height, withSquares, wide);
+        // Rows are independent for the horizontal prefix sums...
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) ->
+                table.prefixRows(pixels, startRow, endRow));
+        // ...and columns are independent when accumulating down; each band walks its columns row by row
+        ParallelRows.forEachBand(width, threads, (startColumn, endColumn) ->
+                table.prefixColumns(startColumn + 1, endColumn + 1));
+        return table;
+    }
+
+    public boolean hasSquares() {
+        return squares != null;
+    }
+
+    // Sum of one channel over [left, right) x [top, bottom)
+    public long sum(int channel, int left, int top, int right, int bottom) {
+        return sums != null
+                ? rectangle(sums[channel], left, top, right, bottom)
+                : rectangle(wideSums[channel], left, top, right, bottom);
+    }
+
+    public double mean(int channel, int left, int top, int right, int bottom) {
+        return (double) sum(channel, left, top, right, bottom) / ((long) (right - left) * (bottom - top));
+    }
+
+    public double variance(int channel, int left, int top, int right, int bottom) {
+        requireSquares();
+        double n = (double) (right - left) * (bottom - top);
+        double mean = sum(channel, left, top, right, bottom) / n;
+        double meanSquare = rectangle(squares[channel], left, top, right, bottom) / n;
+        return Math.max(0, meanSquare - mean * mean);
+    }
+
+    // Mean of every channel over the (2 * radius + 1)^2 window around each pixel, as opaque ARGB
+    public void boxFilter(int[] out, int radius, int threads) {
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) -> {
+            for (int y = startRow; y < endRow; y++) {
+                int top = Math.max(0, y - radius);
+                int bottom = Math.min(height, y + radius + 1);
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int left = Math.max(0, x - radius);
+                    int right = Math.min(width, x + radius + 1);
+                    long count = (long) (right - left) * (bottom - top);
+                    // Rounded to nearest
+                    int r = (int) ((2 * sum(RED, left, top, right, bottom) + count) / (2 * count));
+                    int g = (int) ((2 * sum(GREEN, left, top, right, bottom) + count) / (2 * count));
+                    int b = (int) ((2 * sum(BLUE, left, top, right, bottom) + count) / (2 * count));
+                    out[row + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+                }
+            }
+        });
+    }
+
+    public void localMean(int channel, int radius, float[] out, int threads) {
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) -> {
+            for (int y = startRow; y < endRow; y++) {
+                int top = Math.max(0, y - radius);
+                int bottom = Math.min(height, y + radius + 1);
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int left = Math.max(0, x - radius);
+                    int right = Math.min(width, x + radius + 1);
+                    out[row + x] = (float) ((double) sum(channel, left, top, right, bottom)
+                            / ((long) (right - left) * (bottom - top)));
+                }
+            }
+        });
+    }
+
+    public void localVariance(int channel, int radius, float[] out, int threads) {
+        requireSquares();
+        long[] squareTable = squares[channel];
+        ParallelRows.forEachBand(height, threads, (startRow, endRow) -> {
+            for (int y = startRow; y < endRow; y++) {
+                int top = Math.max(0, y - radius);
+                int bottom = Math.min(height, y + radius + 1);
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int left = Math.max(0, x - radius);
+                    int right = Math.min(width, x + radius + 1);
+                    double n = (double) (right - left) * (bottom - top);
+                    double mean = sum(channel, left, top, right, bottom) / n;
+                    double meanSquare = rectangle(squareTable, left, top, right, bottom) / n;
+                    // Rounding can push a flat window slightly below zero
+                    out[row + x] = (float) Math.max(0, meanSquare - mean * mean);
+                }
+            }
+        });
+    }
+
+    // Every partial sum of an int table fits an int, so the int arithmetic is exact
+    private long rectangle(int[] table, int left, int top, int right, int bottom) {
+        int upper = top * stride;
+        int lower = bottom * stride;
+        return table[lower + right] - table[upper + right] - table[lower + left] + table[upper + left];
+    }
+
+    private long rectangle(long[] table, int left, int top, int right, int bottom) {
+        int upper = top * stride;
+        int lower = bottom * stride;
+        return table[lower + right] - table[upper + right] - table[lower + left] + table[upper + left];
+    }
+
+    private void requireSquares() {
+        if (squares == null) {
+            throw new IllegalStateException("Table was built without squares; variance is unavailable");
+        }
+    }
+
+    private void prefixRows(int[] pixels, int startRow, int endRow) {
+        for (int c = 0; c < 3; c++) {
+            int[] table = sums != null ? sums[c] : null;
+            long[] wideTable = wideSums != null ? wideSums[c] : null;
+            long[] squareTable = squares != null ? squares[c] : null;
+            int shift = SHIFTS[c];
+            for (int y = startRow; y < endRow; y++) {
+                int in = y * width;
+                int base = (y + 1) * stride + 1;
+                long sum = 0;
+                long sumSquares = 0;
+                for (int x = 0; x < width; x++) {
+                    int value = (pixels[in + x] >> shift) & 0xFF;
+                    sum += value;
+                    if (table != null) {
+                        table[base + x] = (int) sum;
+                    } else {
+                        wideTable[base + x] = sum;
+                    }
+                    if (squareTable != null) {
+                        sumSquares += value * value;
+                        squareTable[base + x] = sumSquares;
+                    }
+                }
+            }
+        }
+    }
+
+    // Columns [startColumn, endColumn) of the table, which is offset by one from the image
+    private void prefixColumns(int startColumn, int endColumn) {
+        for (int c = 0; c < 3; c++) {
+            if (sums != null) {
+                accumulateDown(sums[c], startColumn, endColumn);
+            } else {
+                accumulateDown(wideSums[c], startColumn, endColumn);
+            }
+            if (squares != null) {
+                accumulateDown(squares[c], startColumn, endColumn);
+            }
+        }
+    }
+
+    private void accumulateDown(int[] table, int startColumn, int endColumn) {
+        for (int y = 2; y <= height; y++) {
+            int row = y * stride;
+            int above = row - stride;
+            for (int x = startColumn; x < endColumn; x++) {
+                table[row + x] += table[above + x];
+            }
+        }
+    }
+
+    private void accumulateDown(long[] table, int startColumn, int endColumn) {
+        for (int y = 2; y <= height; y++) {
+            int row = y * stride;
+            int above = row - stride;
+            for (int x = startColumn; x < endColumn; x++) {
+                table[row + x] += table[above + x];
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.light.renderscripttest;
+
+import android.content.Intent;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.Locale;
+
+// Batch benchmark over a grid of sizes, radii, sigmas, algorithms and thread counts.
+// The grid can be overridden with int/float array extras, e.g.
+// adb shell am start -n com.light.renderscripttest/.SweepActivity --eia radii 5,15,25 --eia threads 1,4
+// Passing --es pattern NATURAL (plus an optional --el seed) swaps the drawables for generated images,
+// which allows sizes beyond the bundled ones, e.g. --eia widths 3840,7680 --eia heights 2160,4320
+// Speedups are against Java exact on one thread unless --es baseline BOX (and --ei baselineThreads 4) say otherwise
+public class SweepActivity extends AppCompatActivity {
+    private static final String TAG = "ParameterSweep";
+
+    private final ProcessingScheduler scheduler = ProcessingScheduler.getInstance();
+    private RenderScriptBlur rsBlur;
+    private ParameterSweep sweep;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_sweep);
+        TextView output = findViewById(R.id.sweepOutput);
+
+        ParameterSweep.Config config = readConfig(getIntent());
+        // Own wrapper so the sweep's allocations can be dropped afterwards; the context is shared
+        rsBlur = new RenderScriptBlur(scheduler.getRenderScript(this));
+        sweep = new ParameterSweep(config, readSource(getIntent()), rsBlur);
+
+        scheduler.submit(TAG, ProcessingScheduler.Lane.BATCH, () -> {
+            try {
+                sweep.run((done, total, row) -> {
+                    String line = String.format(Locale.US, "[%d/%d] %s %s: %s",
+                            done, total, row.cellKey(), row.configLabel(), row.result);
+                    Log.i(TAG, line);
+                    runOnUiThread(() -> output.setText(line));
+                });
+            } finally {
+                // Release the allocations only once the sweep has stopped using them
+                rsBlur.release();
+            }
+            if (sweep.isCancelled()) {
+                return;
+            }
+            String report = "Scaling (median μs, speedup vs " + sweep.baselineLabel() + ")\n" + sweep.scalingTable()
+                    + "\nBest config per cell\n" + sweep.bestConfigSummary();
+            Log.i(TAG, report);
+            runOnUiThread(() -> output.setText(report));
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Cooperative: the measurement in progress finishes, then the sweep stops
+        sweep.cancel();
+    }
+
+    private ParameterSweep.InputSource readSource(Intent intent) {
+        String pattern = intent.getStringExtra("pattern");
+        if (pattern != null) {
+            long seed = intent.getLongExtra("seed", SyntheticImage.DEFAULT_SEED);
+            return new SyntheticImage.Source(SyntheticImage.Pattern.valueOf(pattern), seed);
+        }
+        return new DrawableSource(getResources());
+    }
+
+    private static ParameterSweep.Config readConfig(Intent intent) {
+        ParameterSweep.Config config = new ParameterSweep.Config();
+        int[] widths = intent.getIntArrayExtra("widths");
+        int[] heights = intent.getIntArrayExtra("heights");
+        if (widths != null && heights != null && widths.length == heights.length) {
+            config.sizes = new int[widths.length][];
+            for (int i = 0; i < widths.length; i++) {
+                config.sizes[i] = new int[]{widths[i], heights[i]};
+            }
+        }
+        int[] radii = intent.getIntArrayExtra("radii");
+        if (radii != null) {
+            config.radii = radii;
+        }
+        float[] sigmas = intent.getFloatArrayExtra("sigmas");
+        if (sigmas != null) {
+            config.sigmas = sigmas;
+        }
+        int[] threads = intent.getIntArrayExtra("threads");
+        if (threads != null) {
+            config.threads = threads;
+        }
+        String[] algorithms = intent.getStringArrayExtra("algorithms");
+        if (algorithms != null) {
+            config.algorithms = new BlurAlgorithm[algorithms.length];
+            for (int i = 0; i < algorithms.length; i++) {
+                config.algorithms[i] = BlurAlgorithm.valueOf(algorithms[i]);
+            }
+        }
+        String baseline = intent.getStringExtra("baseline");
+        if (baseline != null) {
+            config.baselineAlgorithm = BlurAlgorithm.valueOf(baseline);
+        }
+        config.baselineThreads = intent.getIntExtra("baselineThreads", config.baselineThreads);
+        config.warmupRuns = intent.getIntExtra("warmup", config.warmupRuns);
+        config.measuredRuns = intent.getIntExtra("runs", config.measuredRuns);
+        return config;
+    }
+
+    // Uses the bundled drawable when its size matches, otherwise scales the 1920x1080 image
+    private static class DrawableSource implements ParameterSweep.InputSource {
+        private final Resources resources;
+
+        DrawableSource(Resources resources) {
+            this.resources = resources;
+        }
+
+        @Override
+        public int[] load(int width, int height) {
+            Bitmap bitmap = decode(drawableFor(width, height));
+            if (bitmap.getWidth() != width || bitmap.getHeight() != height) {
+                Bitmap scaled = ResizeEngine.resize(bitmap, width, height, ResizeEngine.Kernel.LANCZOS3, ParallelRows.CORES);
+                bitmap.recycle();
+                bitmap = scaled;
+            }
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            bitmap.recycle();
+            return pixels;
+        }
+
+        private static int drawableFor(int width, int height) {
+            if (width == 256 && height == 256) {
+                return R.drawable.i256x256;
+            } else if (width == 640 && height == 480) {
+                return R.drawable.i640x480;
+            } else if (width == 1024 && height == 1024) {
+                return R.drawable.i1024x1024;
+            }
+            return R.drawable.i1920x1080;
+        }
+
+        private Bitmap decode(int resource) {
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inScaled = false;
+            return BitmapFactory.decodeResource(resources, resource, options);
+        }
+    }
+}
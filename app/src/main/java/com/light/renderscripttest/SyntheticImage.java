@@ -0,0 +1,214 @@
+package com.light.renderscripttest;
+
+import android.content.Intent;
+import android.graphics.Bitmap;
+
+// Deterministic test images of any size. Every pixel is a pure function of (seed, x, y),
+// so rows can be generated in parallel and the same seed always gives the same image.
+public final class SyntheticImage {
+
+    public enum Pattern {
+        NOISE,         // Uniform per-pixel RGB noise, worst case for caches and compression
+        GRADIENT,      // Smooth two-colour linear gradient
+        CHECKERBOARD,  // Hard edges on a regular grid, useful for Sobel and morphology
+        NATURAL        // Multi-octave value noise with a 1/f spectrum, similar to photographs
+    }
+
+    public static final long DEFAULT_SEED = 42L;
+
+    private SyntheticImage() {
+    }
+
+    public static int[] generate(Pattern pattern, int width, int height, long seed) {
+        return generate(pattern, width, height, seed, PixelBufferPool.shared());
+    }
+
+    // Returned buffer comes from pool; hand it back with pool.release() when done
+    public static int[] generate(Pattern pattern, int width, int height, long seed, PixelBufferPool pool) {
+        int[] pixels = pool.acquire(checkedLength(width, height));
+        fill(pattern, pixels, width, height, seed);
+        return pixels;
+    }
+
+    public static void fill(Pattern pattern, int[] pixels, int width, int height, long seed) {
+        if (pixels.length < checkedLength(width, height)) {
+            throw new IllegalArgumentException("Buffer too small for " + width + "x" + height);
+        }
+        ParallelRows.forEachBand(height, ParallelRows.CORES, (startRow, endRow) -> {
+            switch (pattern) {
+                case NOISE:
+                    fillNoise(pixels, width, startRow, endRow, seed);
+                    break;
+                case GRADIENT:
+                    fillGradient(pixels, width, height, startRow, endRow, seed);
+                    break;
+                case CHECKERBOARD:
+                    fillCheckerboard(pixels, width, startRow, endRow, seed);
+                    break;
+                case NATURAL:
+                    fillNatural(pixels, width, startRow, endRow, seed);
+                    break;
+            }
+        });
+    }
+
+    public static Bitmap createBitmap(Pattern pattern, int width, int height, long seed) {
+        PixelBufferPool pool = PixelBufferPool.shared();
+        int[] pixels = generate(pattern, width, height, seed, pool);
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        pool.release(pixels);
+        return bitmap;
+    }
+
+    // Reads the "pattern", "width", "height" and optional "seed" extras; null when no pattern was requested
+    public static Bitmap fromIntent(Intent intent) {
+        String pattern = intent.getStringExtra("pattern");
+        if (pattern == null) {
+            return null;
+        }
+        int width = intent.getIntExtra("width", 1920);
+        int height = intent.getIntExtra("height", 1080);
+        long seed = intent.getLongExtra("seed", DEFAULT_SEED);
+        return createBitmap(Pattern.valueOf(pattern), width, height, seed);
+    }
+
+    private static int checkedLength(int width, int height) {
+        long length = (long) width * height;
+        if (width <= 0 || height <= 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Unsupported size " + width + "x" + height);
+        }
+        return (int) length;
+    }
+
+    private static void fillNoise(int[] pixels, int width, int startRow, int endRow, long seed) {
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[row + x] = 0xFF000000 | (int) (hash(seed, x, y) & 0xFFFFFF);
+            }
+        }
+    }
+
+    private static void fillGradient(int[] pixels, int width, int height, int startRow, int endRow, long seed) {
+        int from = (int) hash(seed, -1, 0);
+        int to = (int) hash(seed, -2, 0);
+        double angle = (hash(seed, -3, 0) & 0xFFFF) / 65536.0 * 2 * Math.PI;
+        double dx = Math.cos(angle);
+        double dy = Math.sin(angle);
+        // Project the corners so t spans [0, 1] whatever the direction
+        double min = Math.min(0, dx * (width - 1)) + Math.min(0, dy * (height - 1));
+        double max = Math.max(0, dx * (width - 1)) + Math.max(0, dy * (height - 1));
+        double span = Math.max(1e-9, max - min);
+
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                double t = (x * dx + y * dy - min) / span;
+                pixels[row + x] = lerpColor(from, to, t);
+            }
+        }
+    }
+
+    private static void fillCheckerboard(int[] pixels, int width, int startRow, int endRow, long seed) {
+        int cell = 8 << (int) (hash(seed, -1, 1) & 3);  // 8, 16, 32 or 64 px
+        int dark = 0xFF000000 | (int) (hash(seed, -2, 1) & 0x3F3F3F);
+        int light = 0xFF000000 | (int) (hash(seed, -3, 1) & 0xFFFFFF) | 0xC0C0C0;
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            int cy = y / cell;
+            for (int x = 0; x < width; x++) {
+                pixels[row + x] = ((x / cell + cy) & 1) == 0 ? dark : light;
+            }
+        }
+    }
+
+    private static void fillNatural(int[] pixels, int width, int startRow, int endRow, long seed) {
+        final int octaves = 6;
+        final float baseCell = 256f;
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                float r = 0, g = 0, b = 0;
+                float amplitude = 0.5f;
+                float cell = baseCell;
+                for (int o = 0; o < octaves; o++) {
+                    float fx = x / cell;
+                    float fy = y / cell;
+                    r += amplitude * valueNoise(seed + 3 * o, fx, fy);
+                    g += amplitude * valueNoise(seed + 3 * o + 1, fx, fy);
+                    b += amplitude * valueNoise(seed + 3 * o + 2, fx, fy);
+                    amplitude *= 0.5f;
+                    cell *= 0.5f;
+                }
+                // Correlate the channels a little, real scenes are far from independent RGB
+                float luma = (r + g + b) / 3f;
+                r = 0.6f * luma + 0.4f * r;
+                g = 0.6f * luma + 0.4f * g;
+                b = 0.6f * luma + 0.4f * b;
+                pixels[row + x] = 0xFF000000 | (toByte(r) << 16) | (toByte(g) << 8) | toByte(b);
+            }
+        }
+    }
+
+    // Smoothstep-interpolated lattice noise in [0, 1)
+    private static float valueNoise(long seed, float fx, float fy) {
+        int x0 = (int) Math.floor(fx);
+        int y0 = (int) Math.floor(fy);
+        float tx = fx - x0;
+        float ty = fy - y0;
+        tx = tx * tx * (3 - 2 * tx);
+        ty = ty * ty * (3 - 2 * ty);
+        float v00 = unit(hash(seed, x0, y0));
+        float v10 = unit(hash(seed, x0 + 1, y0));
+        float v01 = unit(hash(seed, x0, y0 + 1));
+        float v11 = unit(hash(seed, x0 + 1, y0 + 1));
+        float top = v00 + (v10 - v00) * tx;
+        float bottom = v01 + (v11 - v01) * tx;
+        return top + (bottom - top) * ty;
+    }
+
+    private static float unit(long hash) {
+        return (hash >>> 40) / (float) (1 << 24);
+    }
+
+    private static int toByte(float v) {
+        return Math.max(0, Math.min(255, (int) (v * 255f)));
+    }
+
+    private static int lerpColor(int from, int to, double t) {
+        int r = (int) (((from >> 16) & 0xFF) + (((to >> 16) & 0xFF) - ((from >> 16) & 0xFF)) * t);
+        int g = (int) (((from >> 8) & 0xFF) + (((to >> 8) & 0xFF) - ((from >> 8) & 0xFF)) * t);
+        int b = (int) ((from & 0xFF) + ((to & 0xFF) - (from & 0xFF)) * t);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    // SplitMix64 finaliser over the packed coordinates
+    private static long hash(long seed, int x, int y) {
+        long z = seed * 0x9E3779B97F4A7C15L + (((long) x << 32) ^ (y & 0xFFFFFFFFL));
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Sweep input that generates each requested size on demand and recycles it afterwards
+    public static class Source implements ParameterSweep.InputSource {
+        private final Pattern pattern;
+        private final long seed;
+
+        public Source(Pattern pattern, long seed) {
+            this.pattern = pattern;
+            this.seed = seed;
+        }
+
+        @Override
+        public int[] load(int width, int height) {
+            return generate(pattern, width, height, seed);
+        }
+
+        @Override
+        public void release(int[] pixels) {
+            PixelBufferPool.shared().release(pixels);
+        }
+    }
+}
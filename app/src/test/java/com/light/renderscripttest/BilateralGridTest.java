@@ -0,0 +1,68 @@
+package com.light.renderscripttest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BilateralGridTest {
+
+    @Test
+    public void constantImage_mapsToItself() {
+        int width = 45, height = 33;
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, 0xFF3C7AB4);
+        for (float sigmaSpatial : new float[]{1f, 4f, 16f, 100f}) {
+            for (int threads : new int[]{1, 3}) {
+                int[] out = new int[width * height];
+                BilateralGrid.apply(pixels, out, width, height, sigmaSpatial, BilateralGrid.DEFAULT_SIGMA_RANGE, threads);
+                assertArrayEquals(pixels, out);
+            }
+        }
+    }
+
+    // 40 and 200 are eight range sigmas apart, beyond the two-cell kernel, so neither side bleeds into the other
+    @Test
+    public void stepEdge_widerThanSigmaRange_isPreserved() {
+        int width = 64, height = 24;
+        int[] pixels = step(width, height, 0xFF282828, 0xFFC8C8C8);
+        for (int threads : new int[]{1, 4}) {
+            int[] out = new int[width * height];
+            BilateralGrid.apply(pixels, out, width, height, 8f, 20f, threads);
+            assertArrayEquals(pixels, out);
+        }
+    }
+
+    // A one-pixel, one-level grid over a full HD frame would be about two billion floats
+    @Test
+    public void largeInput_isCoarsenedToTheGridBudget() {
+        int width = 1920, height = 1080;
+        int gridDepth = 256;
+        assertTrue(BilateralGrid.gridFloats(width, height, gridDepth, 1f) > BilateralGrid.MAX_GRID_FLOATS);
+        float spatial = BilateralGrid.gridSpatial(width, height, gridDepth, 1f);
+        assertTrue(spatial > 1f);
+        assertTrue(BilateralGrid.gridFloats(width, height, gridDepth, spatial) <= BilateralGrid.MAX_GRID_FLOATS);
+
+        int[] pixels = step(width, height, 0xFF000000, 0xFFFFFFFF);
+        int[] out = new int[width * height];
+        PixelBufferPool pool = PixelBufferPool.shared();
+        pool.clear();
+        BilateralGrid.apply(pixels, out, width, height, 1f, 1f, 4);
+        assertArrayEquals(pixels, out);
+        // Only the grid and its blur buffer go back to the pool
+        long pooled = pool.getPooledBytes();
+        pool.clear();
+        assertTrue(pooled > 0);
+        assertTrue(pooled <= 2L * 4 * BilateralGrid.MAX_GRID_FLOATS);
+    }
+
+    private static int[] step(int width, int height, int left, int right) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(pixels, y * width, y * width + width / 2, left);
+            Arrays.fill(pixels, y * width + width / 2, (y + 1) * width, right);
+        }
+        return pixels;
+    }
+}
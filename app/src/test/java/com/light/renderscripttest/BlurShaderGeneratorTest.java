@@ -0,0 +1,73 @@
+package com.light.renderscripttest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BlurShaderGeneratorTest {
+
+    @Test
+    public void mergedTaps_keepTheKernelWeight() {
+        for (int radius : new int[]{1, 2, 10, 15, 25}) {
+            BlurShaderGenerator.Taps taps = BlurShaderGenerator.linearTaps(radius, radius / 3f + 0.3f);
+            assertEquals(1 + (radius + 1) / 2, taps.offsets.length);
+            float sum = taps.weights[0];
+            for (int t = 1; t < taps.weights.length; t++) {
+                sum += 2 * taps.weights[t];
+                // Each merged fetch lands between the two texels it replaces
+                assertTrue(taps.offsets[t] >= 2 * t - 1 && taps.offsets[t] <= 2 * t);
+            }
+            assertEquals(1f, sum, 1e-5f);
+        }
+    }
+
+    @Test
+    public void linearSampling_matchesDiscreteConvolution() {
+        int radius = 25;
+        float sigma = 16.3f;
+        float[] kernel = GaussianBlur.createGaussianKernel(radius, sigma);
+        BlurShaderGenerator.Taps taps = BlurShaderGenerator.linearTaps(radius, sigma);
+        Random random = new Random(7);
+        float[] signal = new float[200];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = random.nextInt(256);
+        }
+        for (int x = radius + 1; x < signal.length - radius - 1; x++) {
+            float expected = 0;
+            for (int k = -radius; k <= radius; k++) {
+                expected += signal[x + k] * kernel[k + radius];
+            }
+            float actual = signal[x] * taps.weights[0];
+            for (int t = 1; t < taps.offsets.length; t++) {
+                actual += (lerp(signal, x + taps.offsets[t]) + lerp(signal, x - taps.offsets[t])) * taps.weights[t];
+            }
+            assertEquals(expected, actual, 1e-2f);
+        }
+    }
+
+    @Test
+    public void fragmentShader_bakesTapsAndIsCached() {
+        String horizontal = BlurShaderGenerator.fragmentShader(10, 3.3f, true);
+        String vertical = BlurShaderGenerator.fragmentShader(10, 3.3f, false);
+        assertSame(horizontal, BlurShaderGenerator.fragmentShader(10, 3.3f, true));
+        assertNotEquals(horizontal, vertical);
+
+        BlurShaderGenerator.Taps taps = BlurShaderGenerator.linearTaps(10, 3.3f);
+        assertTrue(horizontal.contains("textureSize(uTexture, 0).x"));
+        assertTrue(vertical.contains("textureSize(uTexture, 0).y"));
+        assertTrue(horizontal.contains("* " + taps.weights[0] + ";"));
+        for (int t = 1; t < taps.offsets.length; t++) {
+            assertTrue(horizontal.contains("texel * " + taps.offsets[t] + ") * " + taps.weights[t]));
+        }
+        // One centre fetch plus a pair per merged tap
+        assertEquals(2 * taps.offsets.length - 1, horizontal.split("texture\\(uTexture, v_TexCoord").length - 1);
+    }
+
+    private static float lerp(float[] signal, float position) {
+        int i = (int) Math.floor(position);
+        float f = position - i;
+        return signal[i] * (1 - f) + signal[i + 1] * f;
+    }
+}
@@ -0,0 +1,127 @@
+package com.light.renderscripttest;
+
+import android.graphics.Rect;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+// Rect and Color need real framework code, hence Robolectric
+@RunWith(RobolectricTestRunner.class)
+public class DirtyRegionsTest {
+    private static final int WIDTH = 97;
+    private static final int HEIGHT = 61;
+
+    // Touching every border, plus two rectangles that only overlap once grown, and one inside another
+    private static final List<Rect> DIRTY = Arrays.asList(
+            new Rect(0, 0, 5, 3),
+            new Rect(WIDTH - 4, 10, WIDTH, 20),
+            new Rect(30, HEIGHT - 2, 45, HEIGHT),
+            new Rect(40, 20, 50, 30),
+            new Rect(53, 25, 60, 35),
+            new Rect(42, 22, 44, 24));
+
+    @Test
+    public void affected_mergesOverlapsAndClipsToImage() {
+        List<Rect> regions = DirtyRegions.affected(DIRTY, 3, WIDTH, HEIGHT);
+        for (int i = 0; i < regions.size(); i++) {
+            Rect region = regions.get(i);
+            assertTrue(region.left >= 0 && region.top >= 0 && region.right <= WIDTH && region.bottom <= HEIGHT);
+            for (int j = i + 1; j < regions.size(); j++) {
+                assertFalse(Rect.intersects(region, regions.get(j)));
+            }
+        }
+        // The two middle rectangles are 3 apart, so growing both by 3 joins them
+        assertEquals(4, regions.size());
+        assertTrue(DirtyRegions.affected(Collections.singletonList(new Rect(-10, -10, -4, -4)), 3, WIDTH, HEIGHT).isEmpty());
+    }
+
+    @Test
+    public void blurRegions_matchesFullRecompute() {
+        GaussianBlur blur = new GaussianBlur(4, 1.7f);
+        int[] previous = noise(1);
+        int[] modified = modify(previous, DIRTY, 2);
+        int[] out = new int[WIDTH * HEIGHT];
+        blur.blur(previous, out, WIDTH, HEIGHT, 2);
+        blur.blurRegions(modified, out, WIDTH, HEIGHT, DIRTY, 2);
+
+        int[] expected = new int[WIDTH * HEIGHT];
+        blur.blur(modified, expected, WIDTH, HEIGHT, 1);
+        assertArrayEquals(expected, out);
+    }
+
+    @Test
+    public void sobelApplyRegions_matchesFullRecompute() {
+        PixelFilter sobel = PixelFilters.sobel();
+        int[] previous = noise(3);
+        int[] modified = modify(previous, DIRTY, 4);
+        int[] out = new int[WIDTH * HEIGHT];
+        sobel.apply(previous, out, WIDTH, HEIGHT);
+        SobelFilter.applyRegions(modified, out, WIDTH, HEIGHT, DIRTY);
+
+        int[] expected = new int[WIDTH * HEIGHT];
+        sobel.apply(modified, expected, WIDTH, HEIGHT);
+        assertArrayEquals(expected, out);
+    }
+
+    @Test
+    public void panningStream_matchesFullRecompute() throws InterruptedException {
+        int width = 64, height = 40;
+        List<PixelFilter> stages = Arrays.<PixelFilter>asList(PixelFilters.blur(3, 1.3f, 1), PixelFilters.sobel());
+        FrameStreamProcessor.PanningSource source =
+                FrameStreamProcessor.panningSource(SyntheticImage.Pattern.NATURAL, width, height, 5L);
+        List<String> mismatches = Collections.synchronizedList(new ArrayList<String>());
+        FrameStreamProcessor stream = new FrameStreamProcessor(width, height, stages, 2, 0f);
+        stream.start(source, (frame, w, h, index) -> {
+            int[] input = new int[w * h];
+            int[] blurred = new int[w * h];
+            int[] expected = new int[w * h];
+            source.fill(input, w, h, index);
+            stages.get(0).apply(input, blurred, w, h);
+            stages.get(1).apply(blurred, expected, w, h);
+            if (!Arrays.equals(expected, frame)) {
+                mismatches.add("frame " + index);
+            }
+        });
+        // Past one wrap of the window, where the pan restarts and the history is rebuilt
+        while (stream.getStats().frames < width + 10) {
+            Thread.sleep(5);
+        }
+        stream.stop();
+
+        FrameStreamProcessor.Stats stats = stream.getStats();
+        assertEquals(Collections.emptyList(), mismatches);
+        assertEquals(0, stats.failed);
+        assertTrue(stats.incremental > 0);
+    }
+
+    private static int[] noise(long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+
+    private static int[] modify(int[] pixels, List<Rect> dirty, long seed) {
+        Random random = new Random(seed);
+        int[] modified = pixels.clone();
+        for (Rect rect : dirty) {
+            for (int y = rect.top; y < rect.bottom; y++) {
+                for (int x = rect.left; x < rect.right; x++) {
+                    modified[y * WIDTH + x] = 0xFF000000 | random.nextInt(0x1000000);
+                }
+            }
+        }
+        return modified;
+    }
+}
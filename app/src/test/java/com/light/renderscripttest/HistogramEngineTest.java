@@ -0,0 +1,122 @@
+package com.light.renderscripttest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HistogramEngineTest {
+    private static final int WIDTH = 61;
+    private static final int HEIGHT = 37;
+
+    @Test
+    public void histogram_mergesBandsToTheSingleThreadCount() {
+        int[] pixels = skewed(61);
+        // Lengths that leave a tail after the four-way interleave
+        for (int length : new int[]{1, 3, 7, 1001, pixels.length}) {
+            int[] expected = new int[HistogramEngine.BINS];
+            for (int i = 0; i < length; i++) {
+                expected[pixels[i] & 0xFF]++;
+            }
+            for (int threads : new int[]{1, 2, 3, 8}) {
+                assertArrayEquals(expected, HistogramEngine.histogram(pixels, length, threads));
+            }
+        }
+    }
+
+    @Test
+    public void equalize_isMonotonicAndStretchesToTheFullRange() {
+        int[] pixels = skewed(62);
+        int length = pixels.length;
+        int[] out = new int[length];
+        HistogramEngine.equalize(pixels, out, length, 3);
+
+        // Same input level, same output level, and the order of levels is kept
+        int[] mapped = new int[HistogramEngine.BINS];
+        Arrays.fill(mapped, -1);
+        int min = 255, max = 0;
+        for (int i = 0; i < length; i++) {
+            int v = pixels[i] & 0xFF;
+            int gray = out[i] & 0xFF;
+            assertTrue(mapped[v] == -1 || mapped[v] == gray);
+            mapped[v] = gray;
+            assertEquals(gray, (out[i] >> 16) & 0xFF);
+            min = Math.min(min, gray);
+            max = Math.max(max, gray);
+        }
+        int previous = -1;
+        for (int v = 0; v < HistogramEngine.BINS; v++) {
+            if (mapped[v] >= 0) {
+                assertTrue(mapped[v] >= previous);
+                previous = mapped[v];
+            }
+        }
+        assertEquals(0, min);
+        assertEquals(255, max);
+
+        int[] table = HistogramEngine.equalizationTable(HistogramEngine.histogram(pixels, length, 1), length);
+        for (int v = 1; v < HistogramEngine.BINS; v++) {
+            assertTrue(table[v] >= table[v - 1]);
+        }
+    }
+
+    @Test
+    public void equalize_leavesAFlatImageAlone() {
+        int[] pixels = new int[100];
+        Arrays.fill(pixels, 0xFF404040);
+        int[] out = new int[100];
+        HistogramEngine.equalize(pixels, out, pixels.length, 2);
+        assertArrayEquals(pixels, out);
+    }
+
+    // With one tile the output is that tile's table, so each level step is bounded by the clipped bin height
+    @Test
+    public void clahe_keepsLevelStepsWithinTheClipLimit() {
+        int[] pixels = skewed(63);
+        int count = pixels.length;
+        int[] equalized = new int[count];
+        HistogramEngine.equalize(pixels, equalized, count, 1);
+        int unclippedStep = maxStep(pixels, equalized);
+
+        for (float clipLimit : new float[]{1f, 2f, 4f}) {
+            int[] out = new int[count];
+            HistogramEngine.clahe(pixels, out, WIDTH, HEIGHT, 1, 1, clipLimit, 2);
+            // A clipped bin holds at most the limit, its share of the excess and one remainder count
+            int limit = Math.max(1, (int) (clipLimit * count / HistogramEngine.BINS));
+            int bin = limit + count / HistogramEngine.BINS + 1;
+            int bound = (int) (255L * bin / count) + 1;
+            int step = maxStep(pixels, out);
+            assertTrue("clip " + clipLimit + ": step " + step + " > " + bound, step <= bound);
+            assertTrue(step < unclippedStep);
+        }
+    }
+
+    // Largest output jump between consecutive input levels that both occur
+    private static int maxStep(int[] pixels, int[] out) {
+        int[] mapped = new int[HistogramEngine.BINS];
+        Arrays.fill(mapped, -1);
+        for (int i = 0; i < pixels.length; i++) {
+            mapped[pixels[i] & 0xFF] = out[i] & 0xFF;
+        }
+        int step = 0;
+        for (int v = 1; v < HistogramEngine.BINS; v++) {
+            if (mapped[v] >= 0 && mapped[v - 1] >= 0) {
+                step = Math.max(step, mapped[v] - mapped[v - 1]);
+            }
+        }
+        return step;
+    }
+
+    // Every level present, with a large spike at 100 so equalization has a steep step to clip
+    private static int[] skewed(long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            int gray = i < HistogramEngine.BINS ? i : random.nextInt(3) == 0 ? random.nextInt(256) : 100;
+            pixels[i] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+        }
+        return pixels;
+    }
+}
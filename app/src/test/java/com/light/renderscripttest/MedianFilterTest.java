@@ -0,0 +1,94 @@
+package com.light.renderscripttest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MedianFilterTest {
+
+    @Test
+    public void randomImages_matchSortedMedian() {
+        // Radius 12 is wider than the 23 x 17 image, so every window replicates edges on several sides
+        int[][] sizes = {{23, 17}, {40, 9}};
+        int seed = 31;
+        for (int[] size : sizes) {
+            int[] pixels = noise(size[0], size[1], seed++);
+            for (int radius : new int[]{0, 1, 2, 5, 12}) {
+                check(pixels, size[0], size[1], radius);
+            }
+        }
+    }
+
+    @Test
+    public void singleRowAndColumn_matchSortedMedian() {
+        for (int[] size : new int[][]{{1, 30}, {30, 1}, {1, 1}}) {
+            int[] pixels = noise(size[0], size[1], 41);
+            for (int radius : new int[]{1, 3, 20}) {
+                check(pixels, size[0], size[1], radius);
+            }
+        }
+    }
+
+    // Few distinct levels, so many windows tie at the median and at coarse-bin boundaries
+    @Test
+    public void clusteredValues_matchSortedMedian() {
+        Random random = new Random(51);
+        int width = 33, height = 21;
+        int[] pixels = new int[width * height];
+        int[] levels = {0, 15, 16, 17, 128, 255};
+        for (int i = 0; i < pixels.length; i++) {
+            int v = levels[random.nextInt(levels.length)];
+            pixels[i] = 0xFF000000 | (v << 16) | (levels[random.nextInt(levels.length)] << 8) | v;
+        }
+        for (int radius : new int[]{1, 2, 4}) {
+            check(pixels, width, height, radius);
+        }
+    }
+
+    private static void check(int[] pixels, int width, int height, int radius) {
+        int[] expected = bruteForce(pixels, width, height, radius);
+        for (int threads : new int[]{1, 4}) {
+            int[] out = new int[width * height];
+            MedianFilter.apply(pixels, out, width, height, radius, threads);
+            assertArrayEquals(expected, out);
+        }
+    }
+
+    // Per-channel median of the window with edges replicated, by sorting
+    private static int[] bruteForce(int[] pixels, int width, int height, int radius) {
+        int window = 2 * radius + 1;
+        int[] values = new int[window * window];
+        int[] out = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int result = 0xFF000000;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    int n = 0;
+                    for (int dy = -radius; dy <= radius; dy++) {
+                        int sy = Math.max(0, Math.min(height - 1, y + dy));
+                        for (int dx = -radius; dx <= radius; dx++) {
+                            int sx = Math.max(0, Math.min(width - 1, x + dx));
+                            values[n++] = (pixels[sy * width + sx] >> shift) & 0xFF;
+                        }
+                    }
+                    Arrays.sort(values);
+                    result |= values[values.length / 2] << shift;
+                }
+                out[y * width + x] = result;
+            }
+        }
+        return out;
+    }
+
+    private static int[] noise(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,97 @@
+package com.light.renderscripttest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MorphologyTest {
+    // Wider than one vertical-pass strip, so windows straddle strip edges too
+    private static final int WIDTH = 71;
+    private static final int HEIGHT = 29;
+
+    // Odd and even radii, unequal in x and y, and some wider or taller than the image itself
+    private static final int[][] RADII = {{0, 0}, {1, 1}, {2, 1}, {1, 4}, {3, 2}, {6, 5}, {40, 1}, {2, 20}};
+
+    @Test
+    public void erodeAndDilate_matchBruteForce() {
+        int[] pixels = noise(21);
+        for (int threads : new int[]{1, 3}) {
+            for (int[] r : RADII) {
+                int[] eroded = new int[WIDTH * HEIGHT];
+                int[] dilated = new int[WIDTH * HEIGHT];
+                Morphology.apply(Morphology.Operation.ERODE, pixels, eroded, WIDTH, HEIGHT, r[0], r[1], threads);
+                Morphology.apply(Morphology.Operation.DILATE, pixels, dilated, WIDTH, HEIGHT, r[0], r[1], threads);
+                assertArrayEquals(bruteForce(pixels, r[0], r[1], false), eroded);
+                assertArrayEquals(bruteForce(pixels, r[0], r[1], true), dilated);
+            }
+        }
+    }
+
+    @Test
+    public void openAndClose_matchComposedBruteForce() {
+        int[] pixels = noise(22);
+        for (int[] r : RADII) {
+            int[] opened = new int[WIDTH * HEIGHT];
+            int[] closed = new int[WIDTH * HEIGHT];
+            Morphology.apply(Morphology.Operation.OPEN, pixels, opened, WIDTH, HEIGHT, r[0], r[1], 2);
+            Morphology.apply(Morphology.Operation.CLOSE, pixels, closed, WIDTH, HEIGHT, r[0], r[1], 2);
+            assertArrayEquals(bruteForce(bruteForce(pixels, r[0], r[1], false), r[0], r[1], true), opened);
+            assertArrayEquals(bruteForce(bruteForce(pixels, r[0], r[1], true), r[0], r[1], false), closed);
+        }
+    }
+
+    @Test
+    public void openAndClose_areIdempotent() {
+        int[] pixels = noise(23);
+        for (Morphology.Operation operation : new Morphology.Operation[]{Morphology.Operation.OPEN, Morphology.Operation.CLOSE}) {
+            for (int[] r : RADII) {
+                int[] once = new int[WIDTH * HEIGHT];
+                int[] twice = new int[WIDTH * HEIGHT];
+                Morphology.apply(operation, pixels, once, WIDTH, HEIGHT, r[0], r[1], 2);
+                Morphology.apply(operation, once, twice, WIDTH, HEIGHT, r[0], r[1], 2);
+                assertArrayEquals(once, twice);
+            }
+        }
+    }
+
+    @Test
+    public void binaryInput_staysBinary() {
+        int[] binary = new int[WIDTH * HEIGHT];
+        Morphology.threshold(noise(24), binary, binary.length, 128);
+        int[] out = new int[WIDTH * HEIGHT];
+        Morphology.apply(Morphology.Operation.CLOSE, binary, out, WIDTH, HEIGHT, 2, 1, 2);
+        for (int pixel : out) {
+            assertTrue(pixel == 0xFFFFFFFF || pixel == 0xFF000000);
+        }
+    }
+
+    // Minimum (or maximum) of the low byte over the window clipped to the image, as opaque gray
+    private static int[] bruteForce(int[] pixels, int radiusX, int radiusY, boolean max) {
+        int[] out = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int best = max ? 0 : 255;
+                for (int wy = Math.max(0, y - radiusY); wy <= Math.min(HEIGHT - 1, y + radiusY); wy++) {
+                    for (int wx = Math.max(0, x - radiusX); wx <= Math.min(WIDTH - 1, x + radiusX); wx++) {
+                        int gray = pixels[wy * WIDTH + wx] & 0xFF;
+                        best = max ? Math.max(best, gray) : Math.min(best, gray);
+                    }
+                }
+                out[y * WIDTH + x] = 0xFF000000 | (best << 16) | (best << 8) | best;
+            }
+        }
+        return out;
+    }
+
+    private static int[] noise(long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            int gray = random.nextInt(256);
+            pixels[i] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,80 @@
+package com.light.renderscripttest;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ParallelRowsTest {
+
+    @Test
+    public void failure_waitsForEveryBandBeforeThrowing() {
+        AtomicInteger running = new AtomicInteger();
+        try {
+            ParallelRows.forEachBand(40, 4, (startRow, endRow) -> {
+                running.incrementAndGet();
+                try {
+                    if (startRow == 0) {
+                        throw new IllegalArgumentException("first band");
+                    }
+                    sleep(50);
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("first band", e.getMessage());
+        }
+        assertEquals(0, running.get());
+    }
+
+    @Test
+    public void interrupt_waitsForEveryBandThenRestoresTheFlag() {
+        AtomicInteger running = new AtomicInteger();
+        Thread.currentThread().interrupt();
+        try {
+            ParallelRows.forEachBand(40, 4, (startRow, endRow) -> {
+                running.incrementAndGet();
+                try {
+                    if (startRow > 0) {
+                        sleep(50);
+                    }
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        }
+        assertTrue(Thread.interrupted());
+        assertEquals(0, running.get());
+    }
+
+    @Test
+    public void everyRowIsVisitedOnce() {
+        for (int rows : new int[]{1, 9, 10, 97}) {
+            for (int threads : new int[]{1, 2, 4, 16}) {
+                int[] visits = new int[rows];
+                ParallelRows.forEachBand(rows, threads, (startRow, endRow) -> {
+                    for (int y = startRow; y < endRow; y++) {
+                        visits[y]++;
+                    }
+                });
+                for (int visit : visits) {
+                    assertEquals(1, visit);
+                }
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        long end = System.nanoTime() + millis * 1000000;
+        // Busy-wait, as the interrupted caller's band must not be cut short by sleep()
+        while (System.nanoTime() < end) {
+            Thread.yield();
+        }
+    }
+}
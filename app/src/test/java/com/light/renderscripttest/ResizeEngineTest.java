@@ -0,0 +1,106 @@
+package com.light.renderscripttest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ResizeEngineTest {
+
+    @Test
+    public void halve_matchesRoundedBoxAverage() {
+        // Odd sizes duplicate the last row and column
+        for (int[] size : new int[][]{{16, 10}, {17, 11}, {1, 7}, {9, 1}, {1, 1}}) {
+            int width = size[0], height = size[1];
+            int[] pixels = noise(width, height, 71);
+            int nw = (width + 1) / 2, nh = (height + 1) / 2;
+            int[] expected = new int[nw * nh];
+            for (int y = 0; y < nh; y++) {
+                for (int x = 0; x < nw; x++) {
+                    int x1 = Math.min(2 * x + 1, width - 1), y1 = Math.min(2 * y + 1, height - 1);
+                    int[] taps = {pixels[2 * y * width + 2 * x], pixels[2 * y * width + x1],
+                            pixels[y1 * width + 2 * x], pixels[y1 * width + x1]};
+                    int result = 0xFF000000;
+                    for (int shift = 16; shift >= 0; shift -= 8) {
+                        int sum = 2;
+                        for (int tap : taps) {
+                            sum += (tap >> shift) & 0xFF;
+                        }
+                        result |= (sum >> 2) << shift;
+                    }
+                    expected[y * nw + x] = result;
+                }
+            }
+            for (int threads : new int[]{1, 3}) {
+                int[] halved = new int[nw * nh];
+                ResizeEngine.halve(pixels, width, height, halved, threads);
+                assertArrayEquals(expected, halved);
+                // BOX at half size takes the same path
+                int[] resized = new int[nw * nh];
+                ResizeEngine.resize(pixels, width, height, resized, nw, nh, ResizeEngine.Kernel.BOX, threads);
+                assertArrayEquals(expected, resized);
+            }
+        }
+    }
+
+    @Test
+    public void sameSize_isIdentity() {
+        int width = 23, height = 14;
+        int[] pixels = noise(width, height, 72);
+        for (ResizeEngine.Kernel kernel : ResizeEngine.Kernel.values()) {
+            int[] out = new int[width * height];
+            ResizeEngine.resize(pixels, width, height, out, width, height, kernel, 2);
+            assertArrayEquals(pixels, out);
+
+            // Every kernel is zero at nonzero integer offsets, so a same-size table is a single unit tap
+            ResizeEngine.Coefficients c = ResizeEngine.coefficients(width, width, kernel);
+            for (int i = 0; i < width; i++) {
+                for (int k = 0; k < c.count[i]; k++) {
+                    assertEquals(c.start[i] + k == i ? 1 << 14 : 0, c.weights[i * c.taps + k]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void coefficientRows_sumToOne() {
+        int[][] sizes = {{100, 37}, {37, 100}, {64, 32}, {3, 50}, {50, 3}, {1920, 1280}, {7, 1}};
+        for (ResizeEngine.Kernel kernel : ResizeEngine.Kernel.values()) {
+            for (int[] size : sizes) {
+                ResizeEngine.Coefficients c = ResizeEngine.coefficients(size[0], size[1], kernel);
+                for (int i = 0; i < size[1]; i++) {
+                    int sum = 0;
+                    for (int k = 0; k < c.count[i]; k++) {
+                        sum += c.weights[i * c.taps + k];
+                    }
+                    assertEquals(kernel + " " + size[0] + "->" + size[1] + " row " + i, 1 << 14, sum);
+                    assertTrue(c.start[i] >= 0 && c.start[i] + c.count[i] <= size[0]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void flatImage_staysFlatAtAnySize() {
+        int[] pixels = new int[31 * 17];
+        Arrays.fill(pixels, 0xFF3C7AB4);
+        for (ResizeEngine.Kernel kernel : ResizeEngine.Kernel.values()) {
+            int[] out = new int[50 * 9];
+            ResizeEngine.resize(pixels, 31, 17, out, 50, 9, kernel, 2);
+            for (int pixel : out) {
+                assertEquals(0xFF3C7AB4, pixel);
+            }
+        }
+    }
+
+    private static int[] noise(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,64 @@
+package com.light.renderscripttest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+// GaussianBlur packs through Color, hence Robolectric
+@RunWith(RobolectricTestRunner.class)
+public class SharpenTest {
+    private static final int WIDTH = 47;
+    private static final int HEIGHT = 31;
+
+    @Test
+    public void fusedSharpen_matchesBlurThenUnsharpMask() {
+        GaussianBlur blur = new GaussianBlur(4, 1.5f);
+        int[] pixels = noise(81);
+        int[] blurred = new int[WIDTH * HEIGHT];
+        blur.blur(pixels, blurred, WIDTH, HEIGHT, 1);
+
+        for (float amount : new float[]{0.5f, 1f, 2f}) {
+            for (int threshold : new int[]{0, 10, 40}) {
+                int[] single = new int[WIDTH * HEIGHT];
+                blur.sharpen(pixels, single, WIDTH, HEIGHT, amount, threshold, 1);
+                int[] parallel = new int[WIDTH * HEIGHT];
+                blur.sharpen(pixels, parallel, WIDTH, HEIGHT, amount, threshold, 4);
+                assertArrayEquals(single, parallel);
+
+                // The fused pass uses the unrounded blur, which the reference only has to the nearest level
+                int tolerance = (int) Math.ceil(amount * 0.5f) + 1;
+                for (int i = 0; i < pixels.length; i++) {
+                    for (int shift = 16; shift >= 0; shift -= 8) {
+                        int src = (pixels[i] >> shift) & 0xFF;
+                        int difference = src - ((blurred[i] >> shift) & 0xFF);
+                        // Within half a level of the threshold, rounding may flip the decision
+                        if (threshold > 0 && Math.abs(Math.abs(difference) - threshold) <= 1) {
+                            continue;
+                        }
+                        int expected = Math.abs(difference) >= threshold
+                                ? Math.max(0, Math.min(255, Math.round(src + amount * difference))) : src;
+                        int actual = (single[i] >> shift) & 0xFF;
+                        assertTrue("amount " + amount + ", threshold " + threshold + ": " + actual + " vs " + expected,
+                                Math.abs(actual - expected) <= tolerance);
+                        if (Math.abs(difference) < threshold - 1) {
+                            assertEquals(src, actual);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] noise(long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,92 @@
+package com.light.renderscripttest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SummedAreaTableTest {
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+
+    @Test
+    public void rectangles_matchBruteForceAtTheBorders() {
+        int[] pixels = noise(11);
+        for (boolean wide : new boolean[]{false, true}) {
+            SummedAreaTable table = SummedAreaTable.build(pixels, WIDTH, HEIGHT, true, wide, 2);
+            // Whole image, single corner pixels, full edge strips and an interior block
+            int[][] rects = {
+                    {0, 0, WIDTH, HEIGHT}, {0, 0, 1, 1}, {WIDTH - 1, HEIGHT - 1, WIDTH, HEIGHT},
+                    {0, 0, WIDTH, 1}, {0, HEIGHT - 1, WIDTH, HEIGHT}, {0, 0, 1, HEIGHT},
+                    {WIDTH - 1, 0, WIDTH, HEIGHT}, {5, 3, 20, 17}};
+            for (int[] r : rects) {
+                for (int c = 0; c < 3; c++) {
+                    double[] expected = moments(pixels, c, r[0], r[1], r[2], r[3]);
+                    assertEquals((long) expected[0], table.sum(c, r[0], r[1], r[2], r[3]));
+                    assertEquals(expected[1], table.mean(c, r[0], r[1], r[2], r[3]), 1e-9);
+                    assertEquals(expected[2], table.variance(c, r[0], r[1], r[2], r[3]), 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void windows_matchBruteForceAtTheBorders() {
+        int[] pixels = noise(12);
+        SummedAreaTable table = SummedAreaTable.build(pixels, WIDTH, HEIGHT, true, 3);
+        // Radius 15 covers the whole height from the middle row, so every window is clipped somewhere
+        for (int radius : new int[]{0, 1, 4, 15}) {
+            int[] box = new int[WIDTH * HEIGHT];
+            table.boxFilter(box, radius, 3);
+            for (int c = 0; c < 3; c++) {
+                float[] means = new float[WIDTH * HEIGHT];
+                float[] variances = new float[WIDTH * HEIGHT];
+                table.localMean(c, radius, means, 3);
+                table.localVariance(c, radius, variances, 3);
+                for (int y = 0; y < HEIGHT; y++) {
+                    for (int x = 0; x < WIDTH; x++) {
+                        double[] expected = moments(pixels, c, Math.max(0, x - radius), Math.max(0, y - radius),
+                                Math.min(WIDTH, x + radius + 1), Math.min(HEIGHT, y + radius + 1));
+                        int i = y * WIDTH + x;
+                        assertEquals(expected[1], means[i], 1e-3);
+                        assertEquals(expected[2], variances[i], 1e-2);
+                        int shift = 16 - 8 * c;
+                        assertEquals((int) Math.round(expected[1]), (box[i] >> shift) & 0xFF);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void variance_needsSquares() {
+        SummedAreaTable.build(noise(13), WIDTH, HEIGHT, false, 1).variance(0, 0, 0, WIDTH, HEIGHT);
+    }
+
+    // Sum, mean and population variance of one channel over [left, right) x [top, bottom)
+    private static double[] moments(int[] pixels, int channel, int left, int top, int right, int bottom) {
+        int shift = 16 - 8 * channel;
+        long sum = 0;
+        long squares = 0;
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                int value = (pixels[y * WIDTH + x] >> shift) & 0xFF;
+                sum += value;
+                squares += value * value;
+            }
+        }
+        double n = (double) (right - left) * (bottom - top);
+        double mean = sum / n;
+        return new double[]{sum, mean, squares / n - mean * mean};
+    }
+
+    private static int[] noise(long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+}